@@ -0,0 +1,81 @@
+package modele.fractal.continuous;
+
+import dynamic.Calculator;
+
+/**
+ * Compare, pour chaque formule courante, la boucle spécialisée de Mandelbrot (Kernel) à la même
+ * formule calculée par une paire de Calculator.
+ *
+ * Les points sont calculés un à un, sans le noyau SIMD, sur une grille couvrant chaque fractale.
+ * Les deux fractales ont la même détection de cycles. Pour z² + c, seule la boucle spécialisée a
+ * des tests d'intérieur : les points qu'ils couvrent sont retirés des deux grilles, pour que
+ * seules les boucles soient comparées. Chaque mesure est répétée et on garde la meilleure, après
+ * que le JIT ait compilé les deux boucles.
+ *
+ * Ne fait pas partie de l'application : compilé à part, sur les classes de src.
+ *
+ * Usage : java modele.fractal.continuous.KernelBenchmark [côté de la grille] [itérations max]
+ */
+public class KernelBenchmark
+{
+
+	private static final int	REPETITIONS	= 7;
+
+	public static void main(String[] args)
+	{
+		final int side = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+		final int maxIteration = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+		run("z^2+c", (a, b) -> a * a - b * b, (a, b) -> 2 * a * b, side, maxIteration);
+		run("z^3+c", (a, b) -> a * a * a - 3 * a * b * b, (a, b) -> 3 * a * a * b - b * b * b, side, maxIteration);
+		run("abs(z)^2+c", (a, b) -> a * a - b * b, (a, b) -> 2 * Math.abs(a * b), side, maxIteration);
+		run("conj(z)^2+c", (a, b) -> a * a - b * b, (a, b) -> -2 * a * b, side, maxIteration);
+	}
+
+	private static void run(String expression, Calculator re, Calculator img, int side, int maxIteration)
+	{
+		final Mandelbrot special = new Mandelbrot.Builder().formula(expression).maxItr(maxIteration).vectorized(false).build();
+		final Mandelbrot generic = new Mandelbrot.Builder().calcRe(re).calcImg(img).maxItr(maxIteration).vectorized(false).build();
+
+		final boolean skipInterior = special.getKernel() == Mandelbrot.Kernel.SQUARE;
+		double specialTime = Double.MAX_VALUE, genericTime = Double.MAX_VALUE;
+		double specialSum = 0, genericSum = 0;
+
+		for (int r = 0; r < REPETITIONS; r++)
+		{
+			long start = System.nanoTime();
+			specialSum = grid(special, side, skipInterior);
+			specialTime = Math.min(specialTime, (System.nanoTime() - start) / 1e6);
+
+			start = System.nanoTime();
+			genericSum = grid(generic, side, skipInterior);
+			genericTime = Math.min(genericTime, (System.nanoTime() - start) / 1e6);
+		}
+
+		System.out.println(String.format("%-12s %-12s %8.1f ms   Calculator %8.1f ms   gain x%.2f   (sommes %.6g / %.6g)", expression,
+			special.getKernel(), specialTime, genericTime, genericTime / specialTime, specialSum, genericSum));
+	}
+
+	/**
+	 * Calcule une grille de side x side points sur [-2, 2] x [-2, 2] et retourne la somme des
+	 * itérations (pour que le calcul ne soit pas éliminé).
+	 * 
+	 * @param skipInterior vrai pour ignorer les points couverts par les tests d'intérieur de z² + c.
+	 */
+	private static double grid(Mandelbrot fractal, int side, boolean skipInterior)
+	{
+		final double step = 4.0 / side;
+		double sum = 0;
+
+		for (int j = 0; j < side; j++)
+			for (int i = 0; i < side; i++)
+			{
+				final double x = -2 + i * step, y = -2 + j * step;
+				if (skipInterior && (Mandelbrot.inCardioid(x, y) || Mandelbrot.inPeriod2Bulb(x, y) || Mandelbrot.inPeriod3Bulb(x, y)))
+					continue;
+				sum += fractal.getIteration(x, y);
+			}
+
+		return sum;
+	}
+}
@@ -0,0 +1,33 @@
+package dynamic;
+
+/**
+ * Une étape complète de la formule itérée, z ← f(z, c), calculée en un seul appel.
+ * 
+ * Contrairement à une paire de Calculator, les parties réelle et imaginaire sont calculées
+ * ensemble et peuvent partager leurs sous-termes (par exemple zRe² et zIm²).
+ * 
+ * @see FormulaCompiler
+ */
+public interface Formula
+{
+	/**
+	 * Remplace z par f(z, c).
+	 * 
+	 * @param z la partie réelle (z[0]) et imaginaire (z[1]) de z.
+	 * @param cRe la partie réelle de c.
+	 * @param cImg la partie imaginaire de c.
+	 */
+	public void step(double[] z, double cRe, double cImg);
+
+	/**
+	 * Retourne la formule z ← re(z) + cRe + i (img(z) + cImg), calculée par deux Calculator.
+	 */
+	public static Formula of(Calculator re, Calculator img)
+	{
+		return (z, cRe, cImg) -> {
+			final double temp = re.calculate(z[0], z[1]) + cRe;
+			z[1] = img.calculate(z[0], z[1]) + cImg;
+			z[0] = temp;
+		};
+	}
+}
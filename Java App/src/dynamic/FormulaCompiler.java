@@ -0,0 +1,772 @@
+package dynamic;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compile une formule complexe, comme "z^3 + c" ou "conj(z)^2 + c", en une classe Formula générée
+ * à l'exécution.
+ *
+ * La formule est d'abord développée en opérations sur les parties réelles et imaginaires. Les
+ * sous-termes identiques ne sont calculés qu'une fois (z² et z³ partagent zRe² et zIm², par
+ * exemple) et les constantes sont simplifiées. On écrit ensuite directement le bytecode d'une
+ * méthode step(...) sans branchement, définie comme classe cachée (hidden class) : le JIT la
+ * compile comme une formule écrite à la main.
+ *
+ * Syntaxe : les variables z et c, l'unité imaginaire i, les nombres réels, les opérateurs + - *
+ * / et ^ (puissance entière), les parenthèses et les fonctions conj(...) (conjugué) et abs(...)
+ * (valeur absolue de chaque partie, comme dans le Burning Ship).
+ */
+public class FormulaCompiler
+{
+
+	/**
+	 * La plus grande puissance permise (en valeur absolue).
+	 */
+	public static final int		MAX_EXPONENT	= 1024;
+
+	private static final String	CLASS_NAME		= "dynamic/CompiledFormula";
+
+	private FormulaCompiler()
+	{
+	}
+
+	/**
+	 * Compile la formule.
+	 *
+	 * @param expression la formule, fonction de z et c.
+	 * @return une nouvelle instance de la classe générée.
+	 * @throws IllegalArgumentException si la formule n'est pas valide.
+	 */
+	public static Formula compile(String expression)
+	{
+		final Graph graph = new Graph();
+		final Complex result = new Parser(expression, graph).parse();
+		final byte[] bytes = new Emitter().classFile(result);
+
+		try
+		{
+			final MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(bytes, true);
+			return (Formula) lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+		}
+		catch (Throwable e)
+		{
+			throw new IllegalStateException("Impossible de définir la formule compilée : " + expression, e);
+		}
+	}
+
+	/* ****************************************************************
+	 * Opérations réelles
+	 */
+
+	private static final int	CONST	= 0;
+	private static final int	VAR		= 1;
+	private static final int	ADD		= 2;
+	private static final int	SUB		= 3;
+	private static final int	MUL		= 4;
+	private static final int	DIV		= 5;
+	private static final int	NEG		= 6;
+	private static final int	ABS		= 7;
+
+	/**
+	 * Les variables, à leur position dans les variables locales de step(double[] z, double cRe,
+	 * double cImg) : zRe et zImg y sont copiées de z au début.
+	 */
+	private static final int	C_RE	= 2;
+	private static final int	C_IMG	= 4;
+	private static final int	Z_RE	= 6;
+	private static final int	Z_IMG	= 8;
+
+	/**
+	 * Une valeur réelle : une constante, une variable ou une opération sur d'autres valeurs.
+	 */
+	private static final class Node
+	{
+		final int		id;
+		final int		op;
+		final double	value;
+		final Node		a, b;
+
+		/**
+		 * La variable locale qui contient la valeur, une fois calculée.
+		 */
+		int				local	= -1;
+
+		Node(int id, int op, double value, Node a, Node b)
+		{
+			this.id = id;
+			this.op = op;
+			this.value = value;
+			this.a = a;
+			this.b = b;
+		}
+
+		boolean is(double constant)
+		{
+			return this.op == CONST && this.value == constant;
+		}
+	}
+
+	/**
+	 * Le graphe des valeurs réelles de la formule. Chaque opération n'y apparaît qu'une fois.
+	 */
+	private static final class Graph
+	{
+		private final Map<String, Node>	nodes	= new HashMap<String, Node>();
+
+		private Node node(int op, double value, Node a, Node b)
+		{
+			// Les opérandes des opérations commutatives sont ordonnés.
+			if ((op == ADD || op == MUL) && a.id > b.id)
+			{
+				final Node temp = a;
+				a = b;
+				b = temp;
+			}
+
+			final String key = op + ":" + (op == CONST || op == VAR ? Double.toString(value) : a.id + ":" + (b == null ? "" : b.id));
+			Node node = this.nodes.get(key);
+			if (node == null)
+			{
+				node = new Node(this.nodes.size(), op, value, a, b);
+				this.nodes.put(key, node);
+			}
+
+			return node;
+		}
+
+		Node constant(double value)
+		{
+			return this.node(CONST, value, null, null);
+		}
+
+		Node variable(int local)
+		{
+			return this.node(VAR, local, null, null);
+		}
+
+		Node add(Node a, Node b)
+		{
+			if (a.op == CONST && b.op == CONST)
+				return this.constant(a.value + b.value);
+			if (a.is(0))
+				return b;
+			if (b.is(0))
+				return a;
+			if (b.op == NEG)
+				return this.sub(a, b.a);
+
+			return this.node(ADD, 0, a, b);
+		}
+
+		Node sub(Node a, Node b)
+		{
+			if (a.op == CONST && b.op == CONST)
+				return this.constant(a.value - b.value);
+			if (b.is(0))
+				return a;
+			if (a.is(0))
+				return this.neg(b);
+			if (b.op == NEG)
+				return this.add(a, b.a);
+
+			return this.node(SUB, 0, a, b);
+		}
+
+		/**
+		 * Les produits par zéro sont simplifiés : les parties nulles des constantes réelles ou
+		 * imaginaires ne coûtent rien (les valeurs infinies n'apparaissent qu'après l'échappement).
+		 */
+		Node mul(Node a, Node b)
+		{
+			if (a.op == CONST && b.op == CONST)
+				return this.constant(a.value * b.value);
+			if (a.is(0) || b.is(0))
+				return this.constant(0);
+			if (a.is(1))
+				return b;
+			if (b.is(1))
+				return a;
+			if (a.is(-1))
+				return this.neg(b);
+			if (b.is(-1))
+				return this.neg(a);
+
+			return this.node(MUL, 0, a, b);
+		}
+
+		Node div(Node a, Node b)
+		{
+			if (a.op == CONST && b.op == CONST)
+				return this.constant(a.value / b.value);
+			if (b.is(1))
+				return a;
+			if (a.is(0))
+				return this.constant(0);
+
+			return this.node(DIV, 0, a, b);
+		}
+
+		Node neg(Node a)
+		{
+			if (a.op == CONST)
+				return this.constant(-a.value);
+			if (a.op == NEG)
+				return a.a;
+
+			return this.node(NEG, 0, a, null);
+		}
+
+		Node abs(Node a)
+		{
+			if (a.op == CONST)
+				return this.constant(Math.abs(a.value));
+			if (a.op == ABS)
+				return a;
+			if (a.op == NEG)
+				return this.abs(a.a);
+
+			return this.node(ABS, 0, a, null);
+		}
+	}
+
+	/* ****************************************************************
+	 * Opérations complexes
+	 */
+
+	/**
+	 * Une valeur complexe, représentée par ses parties réelle et imaginaire.
+	 */
+	private static final class Complex
+	{
+		final Node	re, im;
+
+		Complex(Node re, Node im)
+		{
+			this.re = re;
+			this.im = im;
+		}
+	}
+
+	private static Complex add(Graph g, Complex u, Complex v)
+	{
+		return new Complex(g.add(u.re, v.re), g.add(u.im, v.im));
+	}
+
+	private static Complex sub(Graph g, Complex u, Complex v)
+	{
+		return new Complex(g.sub(u.re, v.re), g.sub(u.im, v.im));
+	}
+
+	private static Complex mul(Graph g, Complex u, Complex v)
+	{
+		return new Complex(g.sub(g.mul(u.re, v.re), g.mul(u.im, v.im)), g.add(g.mul(u.re, v.im), g.mul(u.im, v.re)));
+	}
+
+	private static Complex div(Graph g, Complex u, Complex v)
+	{
+		final Node norm = g.add(g.mul(v.re, v.re), g.mul(v.im, v.im));
+
+		return new Complex(g.div(g.add(g.mul(u.re, v.re), g.mul(u.im, v.im)), norm),
+			g.div(g.sub(g.mul(u.im, v.re), g.mul(u.re, v.im)), norm));
+	}
+
+	/**
+	 * Puissance entière, par mises au carré successives.
+	 */
+	private static Complex pow(Graph g, Complex u, int n)
+	{
+		Complex result = new Complex(g.constant(1), g.constant(0));
+		Complex square = u;
+
+		for (int k = Math.abs(n); k > 0; k >>= 1)
+		{
+			if ((k & 1) != 0)
+				result = mul(g, result, square);
+			if (k > 1)
+				square = mul(g, square, square);
+		}
+
+		return n < 0 ? div(g, new Complex(g.constant(1), g.constant(0)), result) : result;
+	}
+
+	/* ****************************************************************
+	 * Analyse de la formule
+	 */
+
+	/**
+	 * Analyseur récursif descendant :
+	 *
+	 * <pre>
+	 * expression := terme (('+' | '-') terme)*
+	 * terme      := facteur (('*' | '/') facteur)*
+	 * facteur    := '-' facteur | base ('^' entier)?
+	 * base       := nombre | 'z' | 'c' | 'i' | fonction '(' expression ')' | '(' expression ')'
+	 * </pre>
+	 */
+	private static final class Parser
+	{
+		private final String	text;
+		private final Graph		g;
+		private int				pos;
+
+		Parser(String text, Graph g)
+		{
+			this.text = text;
+			this.g = g;
+		}
+
+		Complex parse()
+		{
+			final Complex result = this.expression();
+			this.skipSpaces();
+			if (this.pos < this.text.length())
+				throw this.error("caractère inattendu '" + this.text.charAt(this.pos) + "'");
+
+			return result;
+		}
+
+		private Complex expression()
+		{
+			Complex result = this.term();
+
+			while (true)
+			{
+				if (this.accept('+'))
+					result = add(this.g, result, this.term());
+				else if (this.accept('-'))
+					result = sub(this.g, result, this.term());
+				else
+					return result;
+			}
+		}
+
+		private Complex term()
+		{
+			Complex result = this.factor();
+
+			while (true)
+			{
+				if (this.accept('*'))
+					result = mul(this.g, result, this.factor());
+				else if (this.accept('/'))
+					result = div(this.g, result, this.factor());
+				else
+					return result;
+			}
+		}
+
+		private Complex factor()
+		{
+			if (this.accept('-'))
+			{
+				final Complex u = this.factor();
+				return new Complex(this.g.neg(u.re), this.g.neg(u.im));
+			}
+
+			final Complex base = this.base();
+			if (!this.accept('^'))
+				return base;
+
+			final boolean negative = this.accept('-');
+			this.skipSpaces();
+			final int start = this.pos;
+			while (this.pos < this.text.length() && Character.isDigit(this.text.charAt(this.pos)))
+				this.pos++;
+			if (start == this.pos)
+				throw this.error("puissance entière attendue");
+
+			final int n;
+			try
+			{
+				n = Integer.parseInt(this.text.substring(start, this.pos));
+			}
+			catch (NumberFormatException e)
+			{
+				throw this.error("puissance trop grande");
+			}
+			if (n > MAX_EXPONENT)
+				throw this.error("puissance trop grande");
+
+			return pow(this.g, base, negative ? -n : n);
+		}
+
+		private Complex base()
+		{
+			this.skipSpaces();
+			if (this.pos >= this.text.length())
+				throw this.error("fin de la formule inattendue");
+
+			final char first = this.text.charAt(this.pos);
+
+			if (this.accept('('))
+			{
+				final Complex result = this.expression();
+				this.expect(')');
+				return result;
+			}
+
+			if (Character.isDigit(first) || first == '.')
+			{
+				final int start = this.pos;
+				while (this.pos < this.text.length() && (Character.isDigit(this.text.charAt(this.pos)) || this.text.charAt(this.pos) == '.'))
+					this.pos++;
+
+				try
+				{
+					return new Complex(this.g.constant(Double.parseDouble(this.text.substring(start, this.pos))), this.g.constant(0));
+				}
+				catch (NumberFormatException e)
+				{
+					throw this.error("nombre invalide");
+				}
+			}
+
+			if (Character.isLetter(first))
+			{
+				final int start = this.pos;
+				while (this.pos < this.text.length() && Character.isLetter(this.text.charAt(this.pos)))
+					this.pos++;
+				final String name = this.text.substring(start, this.pos).toLowerCase();
+
+				switch (name)
+				{
+					case "z":
+						return new Complex(this.g.variable(Z_RE), this.g.variable(Z_IMG));
+					case "c":
+						return new Complex(this.g.variable(C_RE), this.g.variable(C_IMG));
+					case "i":
+						return new Complex(this.g.constant(0), this.g.constant(1));
+					case "conj":
+					case "abs":
+						this.expect('(');
+						final Complex u = this.expression();
+						this.expect(')');
+						return name.equals("conj") ? new Complex(u.re, this.g.neg(u.im)) : new Complex(this.g.abs(u.re), this.g.abs(u.im));
+					default:
+						throw this.error("nom inconnu '" + name + "'");
+				}
+			}
+
+			throw this.error("caractère inattendu '" + first + "'");
+		}
+
+		private void skipSpaces()
+		{
+			while (this.pos < this.text.length() && Character.isWhitespace(this.text.charAt(this.pos)))
+				this.pos++;
+		}
+
+		private boolean accept(char c)
+		{
+			this.skipSpaces();
+			if (this.pos < this.text.length() && this.text.charAt(this.pos) == c)
+			{
+				this.pos++;
+				return true;
+			}
+
+			return false;
+		}
+
+		private void expect(char c)
+		{
+			if (!this.accept(c))
+				throw this.error("'" + c + "' attendu");
+		}
+
+		private IllegalArgumentException error(String message)
+		{
+			return new IllegalArgumentException("Formule invalide (position " + this.pos + ") : " + message + " dans \"" + this.text + "\"");
+		}
+	}
+
+	/* ****************************************************************
+	 * Génération du bytecode
+	 */
+
+	/**
+	 * Écrit le fichier de classe de CompiledFormula :
+	 *
+	 * <pre>
+	 * public final class CompiledFormula implements Formula
+	 * {
+	 * 	public void step(double[] z, double cRe, double cImg)
+	 * 	{
+	 * 		double zRe = z[0], zImg = z[1];
+	 * 		double t0 = ..., t1 = ...; // une variable par opération du graphe
+	 * 		z[0] = ...;
+	 * 		z[1] = ...;
+	 * 	}
+	 * }
+	 * </pre>
+	 *
+	 * La méthode n'a aucun branchement : la version 52 du format ne demande alors pas de
+	 * StackMapTable.
+	 */
+	private static final class Emitter
+	{
+		private static final int			DLOAD			= 0x18;
+		private static final int			DSTORE			= 0x39;
+		private static final int			LDC2_W			= 0x14;
+		private static final int			WIDE			= 0xc4;
+		private static final int			INVOKESTATIC	= 0xb8;
+
+		/**
+		 * Le bassin de constantes : chaque entrée, encodée, avec son indice.
+		 */
+		private final Map<String, Integer>	pool			= new LinkedHashMap<String, Integer>();
+		private final List<byte[]>			entries			= new ArrayList<byte[]>();
+		private int							poolSize		= 1;
+
+		private final ByteArrayOutputStream	code			= new ByteArrayOutputStream();
+		private int							nextLocal		= 10;
+
+		byte[] classFile(Complex result)
+		{
+			try
+			{
+				final int thisClass = this.classEntry(CLASS_NAME);
+				final int superClass = this.classEntry("java/lang/Object");
+				final int formula = this.classEntry("dynamic/Formula");
+				final int objectInit = this.methodEntry(superClass, "<init>", "()V");
+				final int init = this.utf8("<init>");
+				final int initType = this.utf8("()V");
+				final int step = this.utf8("step");
+				final int stepType = this.utf8("([DDD)V");
+				final int codeName = this.utf8("Code");
+
+				// step(...)
+				this.op(0x2b); // aload_1
+				this.op(0x03); // iconst_0
+				this.op(0x31); // daload
+				this.local(DSTORE, Z_RE);
+				this.op(0x2b);
+				this.op(0x04); // iconst_1
+				this.op(0x31);
+				this.local(DSTORE, Z_IMG);
+
+				this.compute(result.re);
+				this.compute(result.im);
+
+				this.op(0x2b);
+				this.op(0x03);
+				this.load(result.re);
+				this.op(0x52); // dastore
+				this.op(0x2b);
+				this.op(0x04);
+				this.load(result.im);
+				this.op(0x52);
+				this.op(0xb1); // return
+
+				final byte[] stepCode = this.code.toByteArray();
+				if (stepCode.length >= 65535 || this.nextLocal >= 65535)
+					throw new IllegalArgumentException("Formule trop longue");
+
+				final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				final DataOutputStream out = new DataOutputStream(bytes);
+
+				out.writeInt(0xCAFEBABE);
+				out.writeShort(0);
+				out.writeShort(52);
+
+				out.writeShort(this.poolSize);
+				for (byte[] entry : this.entries)
+					out.write(entry);
+
+				out.writeShort(0x0001 | 0x0010 | 0x0020); // public final super
+				out.writeShort(thisClass);
+				out.writeShort(superClass);
+				out.writeShort(1);
+				out.writeShort(formula);
+				out.writeShort(0); // champs
+
+				out.writeShort(2);
+
+				// public CompiledFormula() { super(); }
+				out.writeShort(0x0001);
+				out.writeShort(init);
+				out.writeShort(initType);
+				out.writeShort(1);
+				out.writeShort(codeName);
+				out.writeInt(12 + 5);
+				out.writeShort(1); // max_stack
+				out.writeShort(1); // max_locals
+				out.writeInt(5);
+				out.writeByte(0x2a); // aload_0
+				out.writeByte(0xb7); // invokespecial
+				out.writeShort(objectInit);
+				out.writeByte(0xb1);
+				out.writeShort(0);
+				out.writeShort(0);
+
+				out.writeShort(0x0001);
+				out.writeShort(step);
+				out.writeShort(stepType);
+				out.writeShort(1);
+				out.writeShort(codeName);
+				out.writeInt(12 + stepCode.length);
+				out.writeShort(4);
+				out.writeShort(this.nextLocal);
+				out.writeInt(stepCode.length);
+				out.write(stepCode);
+				out.writeShort(0);
+				out.writeShort(0);
+
+				out.writeShort(0); // attributs
+
+				return bytes.toByteArray();
+			}
+			catch (IOException e)
+			{
+				throw new IllegalStateException(e);
+			}
+		}
+
+		/**
+		 * Calcule la valeur et ses opérandes, dans l'ordre, en gardant chaque résultat dans une
+		 * variable locale.
+		 */
+		private void compute(Node node) throws IOException
+		{
+			if (node.op == CONST || node.op == VAR || node.local >= 0)
+				return;
+
+			this.compute(node.a);
+			if (node.b != null)
+				this.compute(node.b);
+
+			this.load(node.a);
+			if (node.b != null)
+				this.load(node.b);
+
+			switch (node.op)
+			{
+				case ADD:
+					this.op(0x63);
+					break;
+				case SUB:
+					this.op(0x67);
+					break;
+				case MUL:
+					this.op(0x6b);
+					break;
+				case DIV:
+					this.op(0x6f);
+					break;
+				case NEG:
+					this.op(0x77);
+					break;
+				case ABS:
+					this.op(INVOKESTATIC);
+					this.u2(this.methodEntry(this.classEntry("java/lang/Math"), "abs", "(D)D"));
+					break;
+				default:
+					throw new IllegalStateException();
+			}
+
+			node.local = this.nextLocal;
+			this.nextLocal += 2;
+			this.local(DSTORE, node.local);
+		}
+
+		private void load(Node node) throws IOException
+		{
+			if (node.op == CONST)
+			{
+				this.op(LDC2_W);
+				this.u2(this.doubleEntry(node.value));
+			}
+			else
+				this.local(DLOAD, node.op == VAR ? (int) node.value : node.local);
+		}
+
+		private void local(int opcode, int index)
+		{
+			if (index > 255)
+			{
+				this.op(WIDE);
+				this.op(opcode);
+				this.u2(index);
+			}
+			else
+			{
+				this.op(opcode);
+				this.op(index);
+			}
+		}
+
+		private void op(int b)
+		{
+			this.code.write(b);
+		}
+
+		private void u2(int value)
+		{
+			this.code.write(value >>> 8);
+			this.code.write(value);
+		}
+
+		/* Bassin de constantes */
+
+		private int entry(String key, int slots, byte[] encoded)
+		{
+			Integer index = this.pool.get(key);
+			if (index == null)
+			{
+				index = this.poolSize;
+				this.pool.put(key, index);
+				this.entries.add(encoded);
+				this.poolSize += slots;
+			}
+
+			return index;
+		}
+
+		private int utf8(String value) throws IOException
+		{
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(1);
+			out.writeUTF(value);
+
+			return this.entry("utf8:" + value, 1, bytes.toByteArray());
+		}
+
+		private int classEntry(String name) throws IOException
+		{
+			final int utf8 = this.utf8(name);
+
+			return this.entry("class:" + name, 1, new byte[] { 7, (byte) (utf8 >>> 8), (byte) utf8 });
+		}
+
+		private int methodEntry(int owner, String name, String type) throws IOException
+		{
+			final int nameIndex = this.utf8(name);
+			final int typeIndex = this.utf8(type);
+			final int nameAndType = this.entry("nat:" + name + type, 1,
+				new byte[] { 12, (byte) (nameIndex >>> 8), (byte) nameIndex, (byte) (typeIndex >>> 8), (byte) typeIndex });
+
+			return this.entry("method:" + owner + "." + name + type, 1,
+				new byte[] { 10, (byte) (owner >>> 8), (byte) owner, (byte) (nameAndType >>> 8), (byte) nameAndType });
+		}
+
+		private int doubleEntry(double value) throws IOException
+		{
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final DataOutputStream out = new DataOutputStream(bytes);
+			out.writeByte(6);
+			out.writeDouble(value);
+
+			return this.entry("double:" + Double.doubleToRawLongBits(value), 2, bytes.toByteArray());
+		}
+	}
+}
@@ -1,5 +1,9 @@
 package modele.fractal;
 
+import java.math.BigDecimal;
+import java.util.Arrays;
+
+import modele.gradients.Gradient;
 import modele.utils.DoublePoint;
 
 public abstract class ContinuousFractal implements Fractal {
@@ -7,6 +11,18 @@ public abstract class ContinuousFractal implements Fractal {
 	public static final DoublePoint	DEF_UP_LEFT_BOUND		= new DoublePoint(-2.2, -1.2);
 	public static final DoublePoint	DEF_DOWN_RIGHT_BOUND	= new DoublePoint(1.0, 1.2);
 
+	/**
+	 * Limite du zoom in, relativement à la dimension de la base, lorsque les calculs se font en
+	 * {@code double}.
+	 */
+	public static final double		DEF_ZOOM_LIMIT			= 1e-15;
+
+	/**
+	 * Le nombre de valeurs de l'état d'une orbite (voir getIteration(double, double, double[])).
+	 * L'itération atteinte est la dernière.
+	 */
+	public static final int			ORBIT_SIZE				= 4;
+
 	/**
 	 * Limite supérieure gauche du fractal. Ce point est pris comme position de base par le
 	 * navigateur, qui ne peut le dépasse.
@@ -19,20 +35,241 @@ public abstract class ContinuousFractal implements Fractal {
 	 */
 	protected DoublePoint			downRightBound;
 
+	/**
+	 * Origine, en haute précision, du plan de la fractale. Les coordonnées passées à getColor(...)
+	 * sont relatives à ce point, ce qui permet au navigateur de conserver des coordonnées
+	 * {@code double} précises lors des zooms profonds.
+	 */
+	protected BigDecimal			originX;
+	protected BigDecimal			originY;
+
+	/**
+	 * Approximation {@code double} de l'origine, pour les calculs qui n'ont pas besoin de plus.
+	 */
+	protected double				approxOriginX;
+	protected double				approxOriginY;
+
 	public ContinuousFractal(DoublePoint P0, DoublePoint P1)
 	{
 		this.upLeftBound = P0;
 		this.downRightBound = P1;
+		this.setOrigin(BigDecimal.ZERO, BigDecimal.ZERO);
 	}
 
 	/**
 	 * Calcule la couleur associée à un point de la fractale.
 	 * 
-	 * @param x la coordonnée x dans la fractale.
-	 * @param y la coordonnée y dans la fractale.
+	 * @param x la coordonnée x dans la fractale, relative à l'origine.
+	 * @param y la coordonnée y dans la fractale, relative à l'origine.
 	 * @return la couleur du point.
 	 */
-	public abstract int getColor(double x, double y);
+	public int getColor(double x, double y)
+	{
+		return this.colorOf(this.getIteration(x, y));
+	}
+
+	/**
+	 * Calcule l'itération d'échappement d'un point de la fractale, sans la colorer. Les points de
+	 * l'ensemble retournent getMaxIterations(). Les renderers qui exploitent la structure des
+	 * bandes d'itération travaillent sur ces valeurs.
+	 * 
+	 * @param x la coordonnée x dans la fractale, relative à l'origine.
+	 * @param y la coordonnée y dans la fractale, relative à l'origine.
+	 * @return l'itération d'échappement, lissée ou non selon l'implémentation.
+	 */
+	public abstract double getIteration(double x, double y);
+
+	/**
+	 * Calcule l'itération d'échappement d'un point comme getIteration(x, y), en reprenant son
+	 * orbite là où elle s'était arrêtée.
+	 * 
+	 * Si l'itération de l'état {@code orbit} (sa dernière valeur) est positive, le calcul reprend
+	 * à partir de cet état plutôt que du début. Si le point atteint getMaxIterations(), l'état final
+	 * de son orbite y est ensuite écrit, pour être repris par une fractale qui continue celle-ci
+	 * (voir resumes(...)). Cette itération est infinie si le point est assurément dans l'ensemble,
+	 * et nulle si l'orbite ne peut pas être reprise.
+	 * 
+	 * Par défaut, les orbites ne sont jamais reprises.
+	 * 
+	 * @param x la coordonnée x dans la fractale, relative à l'origine.
+	 * @param y la coordonnée y dans la fractale, relative à l'origine.
+	 * @param orbit l'état de l'orbite, de ORBIT_SIZE valeurs.
+	 * @return l'itération d'échappement.
+	 */
+	public double getIteration(double x, double y, double[] orbit)
+	{
+		orbit[ORBIT_SIZE - 1] = 0;
+		return this.getIteration(x, y);
+	}
+
+	/**
+	 * Retourne la couleur associée à une itération d'échappement.
+	 * 
+	 * @param iteration l'itération, telle que retournée par getIteration(...).
+	 * @return la couleur.
+	 */
+	public abstract int colorOf(double iteration);
+
+	/**
+	 * Vérifie si cette fractale donne les mêmes itérations que l'autre, pour les mêmes
+	 * coordonnées. Le cas échéant, les itérations calculées par l'une peuvent être réutilisées par
+	 * l'autre. Faux par défaut.
+	 * 
+	 * @param other l'autre fractale.
+	 * @return vrai si les itérations sont les mêmes.
+	 */
+	public boolean sameIterations(ContinuousFractal other)
+	{
+		return false;
+	}
+
+	/**
+	 * Calcule les itérations d'échappement d'une ligne de points régulièrement espacés, (x0 + k dx,
+	 * y0 + k dy) pour k dans [0, count[, comme getIteration(x, y, orbit) pour chacun.
+	 * 
+	 * Une ligne (ou une colonne) de pixels est ainsi calculée en un seul appel, ce qui permet aux
+	 * implémentations d'éviter le coût de chaque appel et de traiter plusieurs points à la fois.
+	 * Par défaut, les points sont calculés un à un.
+	 * 
+	 * @param x0 la coordonnée x du premier point, relative à l'origine.
+	 * @param y0 la coordonnée y du premier point, relative à l'origine.
+	 * @param dx l'écart horizontal entre deux points.
+	 * @param dy l'écart vertical entre deux points.
+	 * @param count le nombre de points.
+	 * @param orbits les états des orbites des points, ORBIT_SIZE valeurs par point, ou null pour
+	 *            ne pas les reprendre ni les garder.
+	 * @param iterations reçoit les itérations d'échappement.
+	 * @param buffers les tableaux de travail de l'appelant, réutilisés d'un appel à l'autre.
+	 */
+	public void getIterations(double x0, double y0, double dx, double dy, int count, double[] orbits, double[] iterations, RowBuffers buffers)
+	{
+		final double[] orbit = buffers.doubles(0, ORBIT_SIZE);
+
+		for (int k = 0; k < count; k++)
+		{
+			if (orbits == null)
+			{
+				iterations[k] = this.getIteration(x0 + k * dx, y0 + k * dy);
+				continue;
+			}
+
+			System.arraycopy(orbits, k * ORBIT_SIZE, orbit, 0, ORBIT_SIZE);
+			iterations[k] = this.getIteration(x0 + k * dx, y0 + k * dy, orbit);
+			System.arraycopy(orbit, 0, orbits, k * ORBIT_SIZE, ORBIT_SIZE);
+		}
+	}
+
+	/**
+	 * Vérifie si les bandes d'itération de la fractale sont connexes : une région dont la bordure
+	 * est dans une seule bande est alors entièrement dans celle-ci, ce que supposent les rendus par
+	 * remplissage. Faux par défaut.
+	 */
+	public boolean hasConnectedBands()
+	{
+		return false;
+	}
+
+	/**
+	 * Vérifie si la fractale estime, pour la dernière vue préparée, la distance de ses points à la
+	 * frontière de l'ensemble (voir getIterations(..., distances)). Faux par défaut.
+	 */
+	public boolean estimatesDistance()
+	{
+		return false;
+	}
+
+	/**
+	 * Comme getIterations(x0, y0, dx, dy, count, orbits, iterations, buffers), en estimant aussi la distance
+	 * de chaque point à la frontière de l'ensemble, dans les unités du plan. Une distance inconnue
+	 * est NaN ; c'est le cas de toutes par défaut.
+	 * 
+	 * @param distances reçoit les distances estimées.
+	 */
+	public void getIterations(double x0, double y0, double dx, double dy, int count, double[] orbits, double[] iterations, double[] distances,
+		RowBuffers buffers)
+	{
+		this.getIterations(x0, y0, dx, dy, count, orbits, iterations, buffers);
+		Arrays.fill(distances, 0, count, Double.NaN);
+	}
+
+	/**
+	 * Étape d'ombrage : ajuste la couleur d'un pixel selon la distance estimée de son point à la
+	 * frontière, en pixels (NaN si elle est inconnue). Par défaut, la couleur ne change pas.
+	 */
+	public int shade(int color, double distance)
+	{
+		return color;
+	}
+
+	/**
+	 * Vérifie si cette fractale ne diffère de l'autre que par un nombre maximal d'itérations plus
+	 * grand. Le cas échéant, les points qui se sont échappés dans l'autre gardent leur itération,
+	 * et les orbites des autres peuvent être reprises là où elles se sont arrêtées. Faux par
+	 * défaut.
+	 * 
+	 * @param previous l'autre fractale, déjà préparée pour la même vue.
+	 * @return vrai si cette fractale continue l'autre.
+	 */
+	public boolean resumes(ContinuousFractal previous)
+	{
+		return false;
+	}
+
+	/**
+	 * Vérifie si cette fractale colore les itérations de la même façon que l'autre. Faux par
+	 * défaut.
+	 * 
+	 * @param other l'autre fractale.
+	 * @return vrai si les couleurs sont les mêmes.
+	 */
+	public boolean sameColors(ContinuousFractal other)
+	{
+		return false;
+	}
+
+	/**
+	 * Retourne le gradient qui donne les couleurs des itérations (voir colorOf(...)).
+	 */
+	public abstract Gradient getColorGradient();
+
+	/**
+	 * Retourne le nombre maximal d'itérations, qui est l'itération des points de l'ensemble.
+	 * 
+	 * @return le nombre maximal d'itérations.
+	 */
+	public abstract int getMaxIterations();
+
+	/**
+	 * Appelée par le générateur avant le rendu de la région délimitée par P0 et P1 (relatifs à
+	 * l'origine). Permet aux implémentations de précalculer ce qui est commun à tous les points de
+	 * la vue. Ne fait rien par défaut.
+	 * 
+	 * @param P0 le coin supérieur gauche de la vue.
+	 * @param P1 le coin inférieur droit de la vue.
+	 */
+	public void prepare(DoublePoint P0, DoublePoint P1) {}
+
+	/**
+	 * Retourne la plus petite largeur de vue, relativement à la largeur de la base, que la fractale
+	 * peut rendre correctement.
+	 * 
+	 * @return la limite du zoom in.
+	 */
+	public double getZoomLimit()
+	{
+		return DEF_ZOOM_LIMIT;
+	}
+
+	/**
+	 * Retourne une description des statistiques de rendu accumulées par cette instance. Vide par
+	 * défaut.
+	 * 
+	 * @return les statistiques de rendu.
+	 */
+	public String getStatistics()
+	{
+		return "";
+	}
 
 	/**
 	 * Getter de la dimension horizontale de la base.
@@ -78,6 +315,31 @@ public abstract class ContinuousFractal implements Fractal {
 		this.downRightBound = bound;
 	}
 
+	public BigDecimal getOriginX()
+	{
+		return this.originX;
+	}
+
+	public BigDecimal getOriginY()
+	{
+		return this.originY;
+	}
+
+	/**
+	 * Change l'origine du plan de la fractale. Les coordonnées subséquentes passées à
+	 * getColor(...) seront relatives à ce point.
+	 * 
+	 * @param x la coordonnée x de l'origine.
+	 * @param y la coordonnée y de l'origine.
+	 */
+	public void setOrigin(BigDecimal x, BigDecimal y)
+	{
+		this.originX = x;
+		this.originY = y;
+		this.approxOriginX = x.doubleValue();
+		this.approxOriginY = y.doubleValue();
+	}
+
 	@Override
 	public abstract ContinuousFractal clone();
 }
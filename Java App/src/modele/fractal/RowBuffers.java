@@ -0,0 +1,58 @@
+package modele.fractal;
+
+import java.util.Arrays;
+
+/**
+ * Tableaux de travail d'une suite d'appels à ContinuousFractal.getIterations(...), réutilisés
+ * d'un appel à l'autre. Chaque PixelRegion a les siens, comme ses lignes de points : la fractale,
+ * partagée entre les Threads, ne garde rien.
+ *
+ * Chaque tableau est identifié par une case, choisie par la fractale, et n'est réalloué que s'il
+ * est trop petit. Son contenu n'est pas conservé d'un appel à l'autre.
+ */
+public final class RowBuffers
+{
+
+	private double[][]	doubles		= new double[0][];
+	private int[][]		ints		= new int[0][];
+	private boolean[][]	booleans	= new boolean[0][];
+
+	/**
+	 * Retourne le tableau de {@code double} de la case spécifiée, d'au moins length valeurs.
+	 */
+	public double[] doubles(int slot, int length)
+	{
+		if (slot >= this.doubles.length)
+			this.doubles = Arrays.copyOf(this.doubles, slot + 1);
+		if (this.doubles[slot] == null || this.doubles[slot].length < length)
+			this.doubles[slot] = new double[length];
+
+		return this.doubles[slot];
+	}
+
+	/**
+	 * Retourne le tableau d'entiers de la case spécifiée, d'au moins length valeurs.
+	 */
+	public int[] ints(int slot, int length)
+	{
+		if (slot >= this.ints.length)
+			this.ints = Arrays.copyOf(this.ints, slot + 1);
+		if (this.ints[slot] == null || this.ints[slot].length < length)
+			this.ints[slot] = new int[length];
+
+		return this.ints[slot];
+	}
+
+	/**
+	 * Retourne le tableau de booléens de la case spécifiée, d'au moins length valeurs.
+	 */
+	public boolean[] booleans(int slot, int length)
+	{
+		if (slot >= this.booleans.length)
+			this.booleans = Arrays.copyOf(this.booleans, slot + 1);
+		if (this.booleans[slot] == null || this.booleans[slot].length < length)
+			this.booleans[slot] = new boolean[length];
+
+		return this.booleans[slot];
+	}
+}
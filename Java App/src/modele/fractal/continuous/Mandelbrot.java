@@ -1,15 +1,21 @@
 package modele.fractal.continuous;
 
+import java.math.BigDecimal;
+import java.math.MathContext;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import modele.fractal.ContinuousFractal;
+import modele.fractal.RowBuffers;
 import modele.gradients.BezierGradient;
 import modele.gradients.Gradient;
 import modele.utils.DoublePoint;
+import modele.utils.IntColor;
+import modele.utils.MathUtil;
 import console.Command;
 import console.Commandable;
 import console.Definition;
@@ -20,91 +26,1248 @@ import console.implementations.AbstractCommandable;
 import console.implementations.SimpleDefinition;
 import dynamic.Calculator;
 import dynamic.CalculatorUtil;
+import dynamic.Formula;
+import dynamic.FormulaCompiler;
 
 public class Mandelbrot extends ContinuousFractal 
 {
 
+	/**
+	 * Limite du zoom in, relativement à la dimension de la base, lorsque le rendu par perturbation
+	 * est permis. On reste loin de la plus petite valeur {@code double} normale, puisque les écarts
+	 * à la référence sont mis au carré.
+	 */
+	public static final double	DEEP_ZOOM_LIMIT			= 1e-280;
+
+	/**
+	 * Largeur de vue, relativement à la distance de l'origine du plan complexe, sous laquelle les
+	 * {@code double} ne suffisent plus à distinguer les pixels et on passe au rendu par
+	 * perturbation.
+	 */
+	public static final double	PERTURBATION_THRESHOLD	= 1e-10;
+
+	/**
+	 * Limite du zoom in lorsque seul le double-double est permis : sous cette largeur de vue,
+	 * environ 32 chiffres ne suffisent plus à distinguer les pixels.
+	 */
+	public static final double	DOUBLE_DOUBLE_THRESHOLD	= 1e-25;
+
+	/**
+	 * Centres (nucleus) et carrés des rayons de disques inscrits dans les composantes de période 3.
+	 * Ces composantes ne sont pas des disques : les rayons ont été mesurés numériquement puis
+	 * réduits d'une marge de sécurité.
+	 */
+	private static final double	P3_BULB_X				= -0.12256116687665362;
+	private static final double	P3_BULB_Y				= 0.74486176661974423;
+	private static final double	P3_BULB_R2				= 0.085 * 0.085;
+	private static final double	P3_CARDIOID_X			= -1.7548776662466927;
+	private static final double	P3_CARDIOID_R2			= 0.0045 * 0.0045;
+
+	/**
+	 * La tolérance maximale de la détection de cycles, relativement à la largeur de la vue : bien
+	 * moins qu'un pixel, quelle que soit la taille de l'image.
+	 */
+	private static final double	PERIODICITY_VIEW_FRACTION	= 1e-7;
+
+	/**
+	 * La distance à la frontière, en pixels, sous laquelle l'ombrage par estimation de distance
+	 * assombrit les couleurs.
+	 */
+	public static final double		DISTANCE_SHADING_WIDTH	= 2.0;
+
+	/**
+	 * Le noyau SIMD, ou null s'il n'a pas été compilé ou ne peut être utilisé sur cette JVM.
+	 */
+	private static final VectorKernel	VECTOR_KERNEL			= loadVectorKernel();
+
+	/**
+	 * Le nombre de points sous lequel une série est calculée un point à la fois : le noyau SIMD
+	 * n'est avantageux que si ses voies restent occupées.
+	 */
+	private static final int		VECTOR_MIN_POINTS		= 32;
+
+	/**
+	 * Les cases des tableaux de travail (RowBuffers) utilisées par les séries de points.
+	 */
+	private static final int		BUFFER_C_RE				= 0;
+	private static final int		BUFFER_C_IMG			= 1;
+	private static final int		BUFFER_Z_RE				= 2;
+	private static final int		BUFFER_Z_IMG			= 3;
+	private static final int		BUFFER_REACHED			= 4;
+	private static final int		BUFFER_LANES			= 5;
+	private static final int		BUFFER_Z				= 6;
+	private static final int		BUFFER_POINTS			= 0;
+
+	/**
+	 * Les formules courantes, itérées par des boucles écrites pour chacune plutôt que par la
+	 * Formula. Ces boucles réutilisent zRe² et zIm² du test d'échappement.
+	 */
+	public enum Kernel
+	{
+		/** z² + c */
+		SQUARE("z^2+c", "z*z+c", "c+z^2", "c+z*z"),
+		/** z³ + c */
+		CUBE("z^3+c", "z*z*z+c", "c+z^3", "c+z*z*z"),
+		/** (|Re z| + i |Im z|)² + c */
+		BURNING_SHIP("abs(z)^2+c", "c+abs(z)^2"),
+		/** conj(z)² + c */
+		TRICORN("conj(z)^2+c", "c+conj(z)^2"),
+		/** Toute autre formule, itérée par la Formula. */
+		GENERIC();
+
+		private final String[]	expressions;
+
+		private Kernel(String... expressions)
+		{
+			this.expressions = expressions;
+		}
+
+		/**
+		 * Reconnaît la formule formée par les Calculator ou, s'il n'est pas null, le texte de la
+		 * formule compilée (sans tenir compte des espaces).
+		 */
+		public static Kernel of(Calculator re, Calculator img, String expression)
+		{
+			if (expression == null)
+				return re == CalculatorUtil.DEFAULT_CALC_RE && img == CalculatorUtil.DEFAULT_CALC_IMG ? SQUARE : GENERIC;
+
+			final String normalized = expression.replaceAll("\\s", "").toLowerCase();
+			for (Kernel kernel : values())
+				for (String known : kernel.expressions)
+					if (known.equals(normalized))
+						return kernel;
+
+			return GENERIC;
+		}
+	}
+
+	/**
+	 * La précision avec laquelle une vue est calculée.
+	 */
+	public enum Precision
+	{
+		/** Les {@code double}, tant qu'ils distinguent les pixels. */
+		DOUBLE,
+		/** Des paires (hi, lo) de {@code double}, environ 106 bits, pour les profondeurs moyennes. */
+		DOUBLE_DOUBLE,
+		/** Des écarts à une orbite de référence en haute précision, pour les zooms profonds. */
+		PERTURBATION
+	}
+
 	private Commandable	commandableNode;
 
-	/**
-	 * Le gradient de couleur utilisé pour colorer la fractale.
-	 */
-	private Gradient	colorGrad;
+	/**
+	 * Le gradient de couleur utilisé pour colorer la fractale.
+	 */
+	private Gradient	colorGrad;
+
+	/**
+	 * Le nombre d'itérations maximale utilisé pour déterminer si un point est dans l'ensemble de
+	 * Mandelbrot ou non.
+	 */
+	private int			maxIteration;
+
+	/**
+	 * La distance à laquelle un point doit se retrouver pour être considéré hors de l'ensemble de
+	 * Mandelbrot et arrêter d'itérer la formule.
+	 */
+	private double		escapeRadius;
+
+	private Calculator	calculZRe;
+
+	private Calculator	calculZImg;
+
+	/**
+	 * La formule itérée : la formule compilée, ou celle formée par calculZRe et calculZImg.
+	 */
+	private Formula		formula;
+
+	/**
+	 * Le texte de la formule compilée, null si la formule est formée par les Calculator.
+	 */
+	private String		expression;
+
+	/**
+	 * La boucle qui itère la formule.
+	 */
+	private Kernel			kernel;
+
+	/**
+	 * Permet le rendu par perturbation (zoom profond) lorsque la vue est trop petite pour les
+	 * {@code double}.
+	 */
+	private boolean			deepZoom;
+
+	/**
+	 * Permet le calcul en double-double des vues trop petites pour les {@code double}, lorsque la
+	 * perturbation n'est pas permise.
+	 */
+	private boolean			doubleDouble;
+
+	/**
+	 * La précision choisie pour la dernière vue préparée.
+	 */
+	private Precision		precision	= Precision.DOUBLE;
+
+	/**
+	 * La partie de l'origine que approxOriginX et approxOriginY n'ont pas, pour le double-double.
+	 */
+	private double			originLowX;
+	private double			originLowY;
+
+	/**
+	 * L'orbite de référence de la dernière vue préparée, et la position de son point relativement à
+	 * l'origine.
+	 */
+	private ReferenceOrbit	reference;
+	private double			referenceX;
+	private double			referenceY;
+
+	/**
+	 * Permet de sauter les premières itérations des points d'une vue rendue par perturbation à
+	 * l'aide d'une approximation par série.
+	 */
+	private boolean				seriesApproximation;
+
+	/**
+	 * L'approximation par série de la dernière vue préparée, null si elle n'est pas utilisée.
+	 */
+	private SeriesApproximation	series;
+
+	/**
+	 * Vrai si la formule est z² + c, auquel cas les tests d'intérieur s'appliquent.
+	 */
+	private boolean				interiorTests;
+
+	/**
+	 * Ajoute les composantes de période 3 aux tests d'intérieur.
+	 */
+	private boolean				period3Bulbs;
+
+	/**
+	 * Le nombre de points dont on a déterminé qu'ils sont dans l'ensemble sans itérer.
+	 */
+	private final LongAdder		interiorHits	= new LongAdder();
+
+	/**
+	 * Tolérance de la détection de cycles : deux valeurs de l'orbite plus proches que cela (sur
+	 * chaque axe) sont considérées égales. Zéro désactive la détection.
+	 */
+	private double				periodicityTolerance;
+
+	/**
+	 * La tolérance utilisée pour la dernière vue préparée : periodicityTolerance, réduite au besoin
+	 * à PERIODICITY_VIEW_FRACTION de la largeur de la vue. Une tolérance fixe confondrait, dans les
+	 * vues assez petites, des points voisins de la frontière qui s'échappent avec des orbites
+	 * périodiques.
+	 */
+	private double				cycleTolerance;
+
+	/**
+	 * Le nombre de points arrêtés par la détection de cycles.
+	 */
+	private final LongAdder		periodicHits	= new LongAdder();
+
+	/**
+	 * Le nombre d'orbites reprises là où elles s'étaient arrêtées.
+	 */
+	private final LongAdder		resumedOrbits	= new LongAdder();
+
+	/**
+	 * Lisse les itérations d'échappement pour un gradient continu. Sans lissage, les itérations
+	 * sont entières et forment des bandes que les renderers par subdivision peuvent remplir.
+	 */
+	private boolean				smoothing;
+
+	/**
+	 * Calcule les séries de points avec le noyau SIMD lorsque c'est possible.
+	 */
+	private boolean				vectorized;
+
+	/**
+	 * Estime la distance des points à la frontière, pour ombrer les couleurs près de celle-ci.
+	 */
+	private boolean				distanceEstimation;
+
+	private Mandelbrot(Gradient colorGrad, int maxItr, double radius, DoublePoint upLeftBound, DoublePoint downRightBound, Calculator Zre, Calculator Zimg,
+		String expression, Formula formula)
+	{
+		super(upLeftBound, downRightBound);
+		this.colorGrad = colorGrad;
+		this.maxIteration = maxItr;
+		this.escapeRadius = radius;
+		this.commandableNode = this.new Commander();
+		this.calculZRe = Zre;
+		this.calculZImg = Zimg;
+		this.expression = expression;
+		this.formula = expression != null ? formula : Formula.of(Zre, Zimg);
+		this.kernel = Kernel.of(Zre, Zimg, expression);
+		this.interiorTests = this.hasDefaultFormula();
+	}
+
+	/**
+	 * Vérifie si un point est dans la cardioïde principale : q(q + (x - 1/4)) < y²/4, où q = (x -
+	 * 1/4)² + y².
+	 */
+	public static boolean inCardioid(final double x, final double y)
+	{
+		final double a = x - 0.25;
+		final double q = a * a + y * y;
+
+		return q * (q + a) < 0.25 * y * y;
+	}
+
+	/**
+	 * Vérifie si un point est dans le disque de période 2 : (x + 1)² + y² < 1/16.
+	 */
+	public static boolean inPeriod2Bulb(final double x, final double y)
+	{
+		final double a = x + 1;
+
+		return a * a + y * y < 0.0625;
+	}
+
+	/**
+	 * Vérifie si un point est dans un des disques inscrits aux composantes de période 3. Le test est
+	 * conservateur : il ne couvre pas toute la composante.
+	 */
+	public static boolean inPeriod3Bulb(final double x, final double y)
+	{
+		double a = x - P3_BULB_X;
+		double b = Math.abs(y) - P3_BULB_Y;
+		if (a * a + b * b < P3_BULB_R2)
+			return true;
+
+		a = x - P3_CARDIOID_X;
+		return a * a + y * y < P3_CARDIOID_R2;
+	}
+
+	/**
+	 * Étape de pré-vérification : détecte, sans itérer, les points qui sont assurément dans
+	 * l'ensemble. Ce sont ces points, qui atteignent toujours maxIteration, qui coûtent le plus cher
+	 * dans les vues de l'ensemble complet.
+	 * 
+	 * @return vrai si le point est assurément dans l'ensemble.
+	 */
+	private boolean isInterior(final double x, final double y)
+	{
+		if (inCardioid(x, y) || inPeriod2Bulb(x, y) || (this.period3Bulbs && inPeriod3Bulb(x, y)))
+		{
+			this.interiorHits.increment();
+			return true;
+		}
+
+		return false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Le tableau de travail de la formule est alloué une fois par appel : les séries de points
+	 * (getIterations(...)) prennent plutôt celui de l'appelant.
+	 */
+	@Override
+	public double getIteration(double x, double y)
+	{
+		return this.iterate(x, y, null, 0, new double[2]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * L'état est (zRe, zImg, 0, itération) pour le calcul direct et (dRe, dImg, m, itération) pour
+	 * la perturbation, où m est la position sur l'orbite de référence.
+	 */
+	@Override
+	public double getIteration(double x, double y, double[] orbit)
+	{
+		return this.resume(x, y, orbit, 0, new double[2]);
+	}
+
+	/**
+	 * Calcule l'itération d'un point à partir de l'état de son orbite, à la position offset de
+	 * orbits.
+	 */
+	private double resume(double x, double y, double[] orbits, int offset, double[] z)
+	{
+		if (orbits[offset + 3] == Double.POSITIVE_INFINITY)
+			return this.maxIteration;
+
+		if (orbits[offset + 3] > 0)
+			this.resumedOrbits.increment();
+
+		return this.iterate(x, y, orbits, offset, z);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Les points sont calculés sans allocation ni appel virtuel. Les nouveaux points sont plutôt
+	 * itérés ensemble par le noyau SIMD, s'il est disponible et activé, lorsque la vue est calculée
+	 * directement avec la formule z² + c.
+	 */
+	@Override
+	public void getIterations(double x0, double y0, double dx, double dy, int count, double[] orbits, double[] iterations, RowBuffers buffers)
+	{
+		if (count >= VECTOR_MIN_POINTS && orbits != null && this.usesVectors())
+		{
+			this.vectorIterations(x0, y0, dx, dy, count, orbits, iterations, buffers);
+			return;
+		}
+
+		final double[] z = buffers.doubles(BUFFER_Z, 2);
+		for (int k = 0; k < count; k++)
+		{
+			if (orbits != null)
+				iterations[k] = this.resume(x0 + k * dx, y0 + k * dy, orbits, k * ORBIT_SIZE, z);
+			else
+				iterations[k] = this.iterate(x0 + k * dx, y0 + k * dy, null, 0, z);
+		}
+	}
+
+	/**
+	 * Calcule une série de points avec le noyau SIMD. Les orbites reprises et les points détectés
+	 * par les tests d'intérieur sont calculés à part. Les points à itérer, leurs résultats et l'état
+	 * des voies du noyau sont dans les tableaux de travail de l'appelant.
+	 */
+	private void vectorIterations(double x0, double y0, double dx, double dy, int count, double[] orbits, double[] iterations,
+		RowBuffers buffers)
+	{
+		final double[] cRe = buffers.doubles(BUFFER_C_RE, count);
+		final double[] cImg = buffers.doubles(BUFFER_C_IMG, count);
+		final int[] points = buffers.ints(BUFFER_POINTS, count);
+		final double[] z = buffers.doubles(BUFFER_Z, 2);
+		int pending = 0;
+
+		for (int k = 0; k < count; k++)
+		{
+			final double x = x0 + k * dx;
+			final double y = y0 + k * dy;
+			final double re = x + this.approxOriginX;
+			final double img = y + this.approxOriginY;
+
+			if (orbits[k * ORBIT_SIZE + 3] != 0)
+				iterations[k] = this.resume(x, y, orbits, k * ORBIT_SIZE, z);
+			else if (this.interiorTests && isInterior(re, img))
+				iterations[k] = this.maxIteration;
+			else
+			{
+				cRe[pending] = re;
+				cImg[pending] = img;
+				points[pending++] = k;
+			}
+		}
+
+		final double[] zRe = buffers.doubles(BUFFER_Z_RE, pending);
+		final double[] zImg = buffers.doubles(BUFFER_Z_IMG, pending);
+		final double[] reached = buffers.doubles(BUFFER_REACHED, pending);
+		final int lanes = VECTOR_KERNEL.lanes();
+		VECTOR_KERNEL.iterate(cRe, cImg, pending, this.maxIteration, this.escapeRadius, this.cycleTolerance, zRe, zImg, reached,
+			buffers.doubles(BUFFER_LANES, lanes * VectorKernel.LANE_VALUES), buffers.booleans(BUFFER_LANES, lanes * VectorKernel.LANE_MASKS),
+			buffers.ints(BUFFER_LANES, lanes));
+
+		for (int p = 0; p < pending; p++)
+		{
+			final int k = points[p];
+
+			if (reached[p] == Double.POSITIVE_INFINITY)
+			{
+				this.periodicHits.increment();
+				orbits[k * ORBIT_SIZE + 3] = Double.POSITIVE_INFINITY;
+				iterations[k] = this.maxIteration;
+			}
+			else
+			{
+				if (reached[p] >= this.maxIteration)
+					saveOrbit(orbits, k * ORBIT_SIZE, zRe[p], zImg[p], 0, reached[p]);
+				iterations[k] = this.smooth(reached[p], zRe[p], zImg[p]);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * C'est le cas de z² + c seulement, dont l'ensemble et les lemniscates sont connexes.
+	 */
+	@Override
+	public boolean hasConnectedBands()
+	{
+		return this.hasDefaultFormula();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * L'estimation n'est faite que pour z² + c, calculé en {@code double}.
+	 */
+	@Override
+	public boolean estimatesDistance()
+	{
+		return this.distanceEstimation && this.precision == Precision.DOUBLE && this.hasDefaultFormula();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Les distances sont estimées avec la dérivée dz/dc, itérée avec z. Les orbites ne sont pas
+	 * gardées, puisque leur dérivée ne l'est pas.
+	 */
+	@Override
+	public void getIterations(double x0, double y0, double dx, double dy, int count, double[] orbits, double[] iterations, double[] distances,
+		RowBuffers buffers)
+	{
+		if (!this.estimatesDistance())
+		{
+			super.getIterations(x0, y0, dx, dy, count, orbits, iterations, distances, buffers);
+			return;
+		}
+
+		for (int k = 0; k < count; k++)
+		{
+			if (orbits != null)
+				orbits[k * ORBIT_SIZE + 3] = 0;
+			iterations[k] = this.distanceIteration(x0 + k * dx, y0 + k * dy, distances, k);
+		}
+	}
+
+	/**
+	 * Vérifie si les séries de points de la dernière vue préparée sont calculées par le noyau SIMD.
+	 */
+	public boolean usesVectors()
+	{
+		return this.vectorized && VECTOR_KERNEL != null && this.precision == Precision.DOUBLE && this.hasDefaultFormula();
+	}
+
+	/**
+	 * Vérifie si le noyau SIMD peut être utilisé : il doit avoir été compilé, et la JVM doit avoir
+	 * le module jdk.incubator.vector (voir VectorKernel).
+	 */
+	public static boolean isVectorAvailable()
+	{
+		return VECTOR_KERNEL != null;
+	}
+
+	/**
+	 * Charge le noyau SIMD par réflexion, pour que le reste de l'application se compile et
+	 * s'exécute sans le module jdk.incubator.vector.
+	 */
+	private static VectorKernel loadVectorKernel()
+	{
+		try
+		{
+			final VectorKernel kernel = Class.forName(VectorKernel.IMPLEMENTATION).asSubclass(VectorKernel.class).getDeclaredConstructor()
+				.newInstance();
+			return kernel.lanes() > 1 ? kernel : null;
+		}
+		catch (ReflectiveOperationException | LinkageError e)
+		{
+			return null;
+		}
+	}
+
+	/**
+	 * Calcule l'itération d'un point, en reprenant et en gardant l'état de son orbite, à la
+	 * position offset, si {@code orbits} n'est pas null.
+	 * 
+	 * @param z le tableau de travail de la formule, de deux valeurs.
+	 */
+	private double iterate(double x, double y, double[] orbits, int offset, final double[] z)
+	{
+		if (this.precision == Precision.PERTURBATION)
+			return this.perturbedIteration(x - this.referenceX, y - this.referenceY, orbits, offset);
+
+		if (this.precision == Precision.DOUBLE_DOUBLE)
+		{
+			// Les orbites ne sont pas gardées en double-double.
+			if (orbits != null)
+				orbits[offset + 3] = 0;
+			return this.doubleDoubleIteration(x, y);
+		}
+
+		x += this.approxOriginX;
+		y += this.approxOriginY;
+
+		double iteration = 0;
+		double zRe = 0, zImg = 0;
+
+		if (orbits != null && orbits[offset + 3] > 0)
+		{
+			zRe = orbits[offset];
+			zImg = orbits[offset + 1];
+			iteration = orbits[offset + 3];
+		}
+		else if (this.interiorTests && isInterior(x, y))
+		{
+			// Le test est moins cher que l'état à garder.
+			if (orbits != null)
+				orbits[offset + 3] = 0;
+			return this.maxIteration;
+		}
+
+		if (this.kernel != Kernel.GENERIC)
+			return this.kernelIteration(x, y, zRe, zImg, iteration, orbits, offset);
+
+		if (this.cycleTolerance > 0)
+			return this.periodicIteration(x, y, zRe, zImg, iteration, orbits, offset, z);
+
+		final Formula formula = this.formula;
+
+		while (((zRe * zRe + zImg * zImg) < escapeRadius) && (iteration < this.maxIteration))
+		{
+			z[0] = zRe;
+			z[1] = zImg;
+			formula.step(z, x, y);
+			zRe = z[0];
+			zImg = z[1];
+
+			iteration++;
+		}
+
+		if (orbits != null && iteration >= this.maxIteration)
+			saveOrbit(orbits, offset, zRe, zImg, 0, iteration);
+
+		return this.smooth(iteration, zRe, zImg);
+	}
+
+	private static void saveOrbit(double[] orbits, int offset, double re, double img, int m, double iteration)
+	{
+		orbits[offset] = re;
+		orbits[offset + 1] = img;
+		orbits[offset + 2] = m;
+		orbits[offset + 3] = iteration;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public int colorOf(double iteration)
+	{
+		return this.colorGrad.interpolate(iteration);
+	}
+
+	/**
+	 * Itère une formule courante avec sa propre boucle : aucun appel par itération, et zRe² et zIm²
+	 * servent à la fois au test d'échappement et à l'itération suivante. Les cycles sont détectés
+	 * par un Cycle, comme dans periodicIteration(...) ; une tolérance nulle ne trouve jamais de
+	 * cycle.
+	 * 
+	 * @return l'itération (lissée) à laquelle le point s'échappe, ou maxIteration.
+	 */
+	private double kernelIteration(final double x, final double y, double zRe, double zImg, double iteration, double[] orbits, int offset)
+	{
+		final double radius = this.escapeRadius;
+		final int max = this.maxIteration;
+
+		double zRe2 = zRe * zRe, zImg2 = zImg * zImg;
+		final Cycle cycle = new Cycle(zRe, zImg, this.cycleTolerance);
+		boolean periodic = false;
+
+		switch (this.kernel)
+		{
+			case SQUARE:
+				while (zRe2 + zImg2 < radius && iteration < max)
+				{
+					zImg = 2 * zRe * zImg + y;
+					zRe = zRe2 - zImg2 + x;
+					zRe2 = zRe * zRe;
+					zImg2 = zImg * zImg;
+					iteration++;
+
+					if (cycle.closes(zRe, zImg))
+					{
+						periodic = true;
+						break;
+					}
+				}
+				break;
+
+			case CUBE:
+				while (zRe2 + zImg2 < radius && iteration < max)
+				{
+					zImg = zImg * (3 * zRe2 - zImg2) + y;
+					zRe = zRe * (zRe2 - 3 * zImg2) + x;
+					zRe2 = zRe * zRe;
+					zImg2 = zImg * zImg;
+					iteration++;
+
+					if (cycle.closes(zRe, zImg))
+					{
+						periodic = true;
+						break;
+					}
+				}
+				break;
+
+			case BURNING_SHIP:
+				while (zRe2 + zImg2 < radius && iteration < max)
+				{
+					zImg = 2 * Math.abs(zRe * zImg) + y;
+					zRe = zRe2 - zImg2 + x;
+					zRe2 = zRe * zRe;
+					zImg2 = zImg * zImg;
+					iteration++;
+
+					if (cycle.closes(zRe, zImg))
+					{
+						periodic = true;
+						break;
+					}
+				}
+				break;
+
+			case TRICORN:
+				while (zRe2 + zImg2 < radius && iteration < max)
+				{
+					zImg = -2 * zRe * zImg + y;
+					zRe = zRe2 - zImg2 + x;
+					zRe2 = zRe * zRe;
+					zImg2 = zImg * zImg;
+					iteration++;
+
+					if (cycle.closes(zRe, zImg))
+					{
+						periodic = true;
+						break;
+					}
+				}
+				break;
+
+			default:
+				throw new IllegalStateException("Pas de boucle pour " + this.kernel);
+		}
+
+		if (periodic)
+		{
+			this.periodicHits.increment();
+			if (orbits != null)
+				orbits[offset + 3] = Double.POSITIVE_INFINITY;
+			return max;
+		}
+
+		if (orbits != null && iteration >= max)
+			saveOrbit(orbits, offset, zRe, zImg, 0, iteration);
+
+		return this.smooth(iteration, zRe, zImg);
+	}
+
+	/**
+	 * Itère z² + c avec sa dérivée dz/dc (dz ← 2 z dz + 1) pour estimer la distance du point à la
+	 * frontière de l'ensemble :
+	 * <ul>
+	 * <li>à l'extérieur, d = |z| ln|z| / |dz| au moment de l'échappement ;</li>
+	 * <li>à l'intérieur, par interiorDistance(...), lorsqu'un cycle est détecté ou, sinon, lorsque
+	 * maxIteration est atteint : la période est alors celle du domaine atomique du point (l'itération
+	 * à laquelle |z| a été le plus petit), et l'estimation est nulle si z n'est pas encore assez
+	 * près de son cycle ;</li>
+	 * <li>l'infini pour les points des tests d'intérieur.</li>
+	 * </ul>
+	 * Les itérations sont les mêmes que celles de kernelIteration(...).
+	 * 
+	 * @param distances reçoit la distance estimée, à la position k.
+	 * @return l'itération (lissée) à laquelle le point s'échappe, ou maxIteration.
+	 */
+	private double distanceIteration(double x, double y, double[] distances, int k)
+	{
+		x += this.approxOriginX;
+		y += this.approxOriginY;
+
+		if (this.interiorTests && isInterior(x, y))
+		{
+			distances[k] = Double.POSITIVE_INFINITY;
+			return this.maxIteration;
+		}
+
+		final double tolerance = this.cycleTolerance;
+		double zRe = 0, zImg = 0, dRe = 0, dImg = 0, temp;
+		double savedRe = 0, savedImg = 0;
+		int period = 1, steps = 0;
+		int iteration = 0;
+		double smallest = Double.POSITIVE_INFINITY, norm2;
+		int atomPeriod = 1;
+
+		while ((norm2 = zRe * zRe + zImg * zImg) < this.escapeRadius && iteration < this.maxIteration)
+		{
+			if (iteration > 0 && norm2 < smallest)
+			{
+				smallest = norm2;
+				atomPeriod = iteration;
+			}
+
+			temp = 2 * (zRe * dRe - zImg * dImg) + 1;
+			dImg = 2 * (zRe * dImg + zImg * dRe);
+			dRe = temp;
+
+			temp = zRe * zRe - zImg * zImg + x;
+			zImg = 2 * zRe * zImg + y;
+			zRe = temp;
+			iteration++;
+
+			if (Math.abs(zRe - savedRe) < tolerance && Math.abs(zImg - savedImg) < tolerance)
+			{
+				this.periodicHits.increment();
+				distances[k] = interiorDistance(zRe, zImg, x, y, steps + 1);
+				return this.maxIteration;
+			}
+			if (++steps == period)
+			{
+				savedRe = zRe;
+				savedImg = zImg;
+				period <<= 1;
+				steps = 0;
+			}
+		}
+
+		if (iteration >= this.maxIteration)
+		{
+			distances[k] = interiorDistance(zRe, zImg, x, y, atomPeriod);
+			return this.maxIteration;
+		}
+
+		final double norm = Math.sqrt(zRe * zRe + zImg * zImg);
+		distances[k] = norm * Math.log(norm) / Math.sqrt(dRe * dRe + dImg * dImg);
+
+		return this.smooth(iteration, zRe, zImg);
+	}
+
+	/**
+	 * Estimation de distance intérieure d'un point c dont l'orbite suit un cycle de période p
+	 * passant par z0 : d = (1 - |∂z/∂z0|²) / |∂²z/∂c∂z0 + ∂²z/∂z0² (∂z/∂c) / (1 - ∂z/∂z0)|, où les
+	 * dérivées sont prises après un tour du cycle (formule de wikipédia).
+	 * 
+	 * @return la distance estimée, ou zéro si le cycle n'est pas attractif (z0 n'était pas
+	 *         vraiment sur un cycle).
+	 */
+	private static double interiorDistance(double zRe, double zImg, final double cRe, final double cImg, final int period)
+	{
+		// dz = ∂z/∂z0, dc = ∂z/∂c, dzz = ∂²z/∂z0², dcz = ∂²z/∂c∂z0
+		double dzRe = 1, dzImg = 0, dcRe = 0, dcImg = 0, dzzRe = 0, dzzImg = 0, dczRe = 0, dczImg = 0, temp;
+
+		for (int n = 0; n < period; n++)
+		{
+			// dcz ← 2 (z dcz + dc dz)
+			temp = 2 * (zRe * dczRe - zImg * dczImg + dcRe * dzRe - dcImg * dzImg);
+			dczImg = 2 * (zRe * dczImg + zImg * dczRe + dcRe * dzImg + dcImg * dzRe);
+			dczRe = temp;
+
+			// dzz ← 2 (z dzz + dz²)
+			temp = 2 * (zRe * dzzRe - zImg * dzzImg + dzRe * dzRe - dzImg * dzImg);
+			dzzImg = 2 * (zRe * dzzImg + zImg * dzzRe + 2 * dzRe * dzImg);
+			dzzRe = temp;
+
+			// dz ← 2 z dz
+			temp = 2 * (zRe * dzRe - zImg * dzImg);
+			dzImg = 2 * (zRe * dzImg + zImg * dzRe);
+			dzRe = temp;
+
+			// dc ← 2 z dc + 1
+			temp = 2 * (zRe * dcRe - zImg * dcImg) + 1;
+			dcImg = 2 * (zRe * dcImg + zImg * dcRe);
+			dcRe = temp;
+
+			temp = zRe * zRe - zImg * zImg + cRe;
+			zImg = 2 * zRe * zImg + cImg;
+			zRe = temp;
+		}
+
+		final double slope = dzRe * dzRe + dzImg * dzImg;
+		if (slope >= 1)
+			return 0;
+
+		// q = dc / (1 - dz)
+		final double oneRe = 1 - dzRe, oneImg = -dzImg;
+		final double qRe = (dcRe * oneRe + dcImg * oneImg) / (oneRe * oneRe + oneImg * oneImg);
+		final double qImg = (dcImg * oneRe - dcRe * oneImg) / (oneRe * oneRe + oneImg * oneImg);
+
+		final double denRe = dczRe + dzzRe * qRe - dzzImg * qImg;
+		final double denImg = dczImg + dzzRe * qImg + dzzImg * qRe;
+
+		return (1 - slope) / Math.sqrt(denRe * denRe + denImg * denImg);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Avec l'estimation de distance, les couleurs sont assombries à moins de
+	 * DISTANCE_SHADING_WIDTH pixels de la frontière : les filaments, plus fins qu'un pixel,
+	 * restent visibles sans suréchantillonnage ni nombre d'itérations élevé.
+	 */
+	@Override
+	public int shade(int color, double distance)
+	{
+		if (!this.distanceEstimation || Double.isNaN(distance) || distance >= DISTANCE_SHADING_WIDTH)
+			return color;
+
+		final double t = Math.sqrt(Math.max(0, distance) / DISTANCE_SHADING_WIDTH);
+
+		return IntColor.argb(IntColor.alpha(color), (int) (IntColor.red(color) * t), (int) (IntColor.green(color) * t), (int) (IntColor.blue(color) * t));
+	}
+
+	/**
+	 * Itère la formule en détectant les orbites périodiques (méthode de Brent) : on compare z à une
+	 * valeur sauvegardée, qu'on remplace à chaque puissance de deux d'itérations. Un cycle de
+	 * période p est ainsi trouvé en au plus 2p itérations après que l'orbite s'y soit stabilisée.
+	 * Un point dont l'orbite est périodique ne s'échappera jamais : il est dans l'ensemble.
+	 * 
+	 * Une orbite reprise recommence la détection à partir de son état.
+	 * 
+	 * @return l'itération (lissée) à laquelle le point s'échappe, ou maxIteration.
+	 */
+	private double periodicIteration(final double x, final double y, double zRe, double zImg, double iteration, double[] orbits, int offset,
+		final double[] z)
+	{
+		final double tolerance = this.cycleTolerance;
+
+		double savedRe = zRe, savedImg = zImg;
+		int period = 1, steps = 0;
+
+		final Formula formula = this.formula;
+
+		while (((zRe * zRe + zImg * zImg) < escapeRadius) && (iteration < this.maxIteration))
+		{
+			z[0] = zRe;
+			z[1] = zImg;
+			formula.step(z, x, y);
+			zRe = z[0];
+			zImg = z[1];
+
+			iteration++;
+
+			if (Math.abs(zRe - savedRe) < tolerance && Math.abs(zImg - savedImg) < tolerance)
+			{
+				this.periodicHits.increment();
+				if (orbits != null)
+					orbits[offset + 3] = Double.POSITIVE_INFINITY;
+				return this.maxIteration;
+			}
+
+			if (++steps == period)
+			{
+				savedRe = zRe;
+				savedImg = zImg;
+				period <<= 1;
+				steps = 0;
+			}
+		}
+
+		if (orbits != null && iteration >= this.maxIteration)
+			saveOrbit(orbits, offset, zRe, zImg, 0, iteration);
+
+		return this.smooth(iteration, zRe, zImg);
+	}
 
 	/**
-	 * Le nombre d'itérations maximale utilisé pour déterminer si un point est dans l'ensemble de
-	 * Mandelbrot ou non.
+	 * Itère z² + c en double-double : chaque valeur est une paire (hi, lo) de {@code double} dont
+	 * la somme a environ 106 bits de précision. c est formé de l'origine, elle aussi en
+	 * double-double, et de la position du point, sans perte.
+	 * 
+	 * Les produits exacts hi × hi viennent de Math.fma, les sommes exactes de l'algorithme TwoSum
+	 * de Knuth. Les tests d'intérieur et la détection de cycles, en {@code double}, ne sont pas
+	 * assez fins à ces profondeurs et ne sont pas utilisés (comme pour la perturbation).
+	 * 
+	 * @param x la coordonnée x du point, relative à l'origine.
+	 * @param y la coordonnée y du point, relative à l'origine.
+	 * @return l'itération (lissée) à laquelle le point s'échappe.
 	 */
-	private int			maxIteration;
+	private double doubleDoubleIteration(final double x, final double y)
+	{
+		double s, b, e;
+
+		// c = origine + (x, y)
+		s = this.approxOriginX + x;
+		b = s - this.approxOriginX;
+		e = (this.approxOriginX - (s - b)) + (x - b) + this.originLowX;
+		final double cReHi = s + e;
+		final double cReLo = e - (cReHi - s);
+
+		s = this.approxOriginY + y;
+		b = s - this.approxOriginY;
+		e = (this.approxOriginY - (s - b)) + (y - b) + this.originLowY;
+		final double cImgHi = s + e;
+		final double cImgLo = e - (cImgHi - s);
+
+		double zReHi = 0, zReLo = 0, zImgHi = 0, zImgLo = 0;
+		double re2Hi, re2Lo, img2Hi, img2Lo, prodHi, prodLo, tHi, tLo, p;
+		int iteration = 0;
+
+		while (iteration < this.maxIteration)
+		{
+			// zRe², zImg² et zRe zImg
+			p = zReHi * zReHi;
+			e = Math.fma(zReHi, zReHi, -p) + 2 * zReHi * zReLo;
+			re2Hi = p + e;
+			re2Lo = e - (re2Hi - p);
+
+			p = zImgHi * zImgHi;
+			e = Math.fma(zImgHi, zImgHi, -p) + 2 * zImgHi * zImgLo;
+			img2Hi = p + e;
+			img2Lo = e - (img2Hi - p);
+
+			if (re2Hi + img2Hi >= this.escapeRadius)
+				break;
+
+			p = zReHi * zImgHi;
+			e = Math.fma(zReHi, zImgHi, -p) + (zReHi * zImgLo + zReLo * zImgHi);
+			prodHi = p + e;
+			prodLo = e - (prodHi - p);
+
+			// zRe = zRe² - zImg² + cRe
+			s = re2Hi - img2Hi;
+			b = s - re2Hi;
+			e = (re2Hi - (s - b)) + (-img2Hi - b) + re2Lo - img2Lo;
+			tHi = s + e;
+			tLo = e - (tHi - s);
+
+			s = tHi + cReHi;
+			b = s - tHi;
+			e = (tHi - (s - b)) + (cReHi - b) + tLo + cReLo;
+			zReHi = s + e;
+			zReLo = e - (zReHi - s);
+
+			// zImg = 2 zRe zImg + cImg
+			s = 2 * prodHi + cImgHi;
+			b = s - 2 * prodHi;
+			e = (2 * prodHi - (s - b)) + (cImgHi - b) + 2 * prodLo + cImgLo;
+			zImgHi = s + e;
+			zImgLo = e - (zImgHi - s);
+
+			iteration++;
+		}
+
+		return this.smooth(iteration, zReHi, zImgHi);
+	}
 
 	/**
-	 * La distance à laquelle un point doit se retrouver pour être considéré hors de l'ensemble de
-	 * Mandelbrot et arrêter d'itérer la formule.
+	 * Itère l'écart d'un point à l'orbite de référence : si z = Z + d, alors d(n+1) = 2 Z(n) d(n) +
+	 * d(n)² + dc. Ces écarts restent petits et se calculent sans perte en {@code double}, peu importe
+	 * la profondeur du zoom.
+	 * 
+	 * Lorsque l'orbite du point passe plus près de zéro que son écart à la référence, l'écart n'est
+	 * plus représentable précisément (un « glitch »). On reprend alors la référence à son début, en
+	 * prenant z comme nouvel écart. On fait de même si la référence s'échappe avant le point.
+	 * 
+	 * Si une approximation par série est disponible, on commence directement à l'itération qu'elle
+	 * permet de sauter. Une orbite reprise commence plutôt à son état (la référence étant la même),
+	 * s'il est plus loin.
+	 * 
+	 * @param dcRe l'écart horizontal à la référence.
+	 * @param dcImg l'écart vertical à la référence.
+	 * @param orbits les états des orbites, ou null.
+	 * @param offset la position de l'état de l'orbite du point.
+	 * @return l'itération (lissée) à laquelle le point s'échappe.
 	 */
-	private double		escapeRadius;
+	private double perturbedIteration(final double dcRe, final double dcImg, double[] orbits, int offset)
+	{
+		final double[] refRe = this.reference.getRe();
+		final double[] refImg = this.reference.getImg();
+		final int refLast = this.reference.length() - 1;
 
-	private Calculator	calculZRe;
+		double dRe = 0, dImg = 0, zRe = 0, zImg = 0, temp, norm;
+		int m = 0;
+		int iteration = 0;
 
-	private Calculator	calculZImg;
+		// L'approximation par série peut sauter plus loin que l'état gardé.
+		if (orbits != null && orbits[offset + 3] > 0 && (this.series == null || this.series.getSkip() < orbits[offset + 3]))
+		{
+			dRe = orbits[offset];
+			dImg = orbits[offset + 1];
+			m = (int) orbits[offset + 2];
+			iteration = (int) orbits[offset + 3];
+		}
+		else if (this.series != null)
+		{
+			dRe = this.series.re(dcRe, dcImg);
+			dImg = this.series.img(dcRe, dcImg);
+			m = this.series.getSkip();
+			iteration = m;
+		}
 
-	private Mandelbrot(Gradient colorGrad, int maxItr, double radius, DoublePoint upLeftBound, DoublePoint downRightBound, Calculator Zre, Calculator Zimg)
-	{
-		super(upLeftBound, downRightBound);
-		this.colorGrad = colorGrad;
-		this.maxIteration = maxItr;
-		this.escapeRadius = radius;
-		this.commandableNode = this.new Commander();
-		this.calculZRe = Zre;
-		this.calculZImg = Zimg;
+		while (iteration < this.maxIteration)
+		{
+			temp = 2 * (refRe[m] * dRe - refImg[m] * dImg) + dRe * dRe - dImg * dImg + dcRe;
+			dImg = 2 * (refRe[m] * dImg + refImg[m] * dRe + dRe * dImg) + dcImg;
+			dRe = temp;
+			m++;
+			iteration++;
+
+			zRe = refRe[m] + dRe;
+			zImg = refImg[m] + dImg;
+			norm = zRe * zRe + zImg * zImg;
+
+			if (norm >= this.escapeRadius)
+				break;
+
+			if (norm < dRe * dRe + dImg * dImg || m == refLast)
+			{
+				dRe = zRe;
+				dImg = zImg;
+				m = 0;
+			}
+		}
+
+		if (orbits != null && iteration >= this.maxIteration)
+			saveOrbit(orbits, offset, dRe, dImg, m, iteration);
+
+		return this.smooth(iteration, zRe, zImg);
 	}
 
-	public boolean inCardioid(final double x, final double y)
+	/**
+	 * Ajuste l'itération d'échappement pour un gradient continu. Formule de wikipédia.
+	 */
+	private double smooth(double iteration, double zRe, double zImg)
 	{
-		double t = Math.atan((x - 0.25) / y) - Math.PI / 2.0;
+		if (this.smoothing && iteration < this.maxIteration)
+		{
+			double z = (zRe * zRe) + (zImg * zImg);
+			double n = Math.log((0.5 * Math.log(z)) / Math.log(2)) / Math.log(2);
+			iteration = (iteration + 1) - n;
+		}
 
-		double rn = Math.sqrt((x - 0.25) * (x - 0.25) + y * y) * (y > 0 ? 1 : -1);
-		double r1 = -(1 + Math.cos(t)) / 2.0;
-		double r2 = (1 - Math.cos(t)) / 2.0;
+		return iteration;
+	}
 
-		if (rn >= r1 && rn <= r2)
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Choisit la précision la moins chère qui distingue encore les pixels de la vue : les
+	 * {@code double}, puis la perturbation (si le zoom profond est permis) ou, sinon, le
+	 * double-double (s'il est permis). La perturbation coûte un {@code double} par point plus une
+	 * seule orbite en haute précision, et l'approximation par série lui fait sauter des
+	 * itérations : elle est plus rapide que le double-double à toutes les profondeurs.
+	 * 
+	 * Pour la perturbation, calcule l'orbite de référence au centre de la vue (si la précédente ne
+	 * peut être réutilisée), puis l'approximation par série valide aux coins de la vue.
+	 * 
+	 * La tolérance de la détection de cycles est aussi ramenée à la taille de la vue.
+	 */
+	@Override
+	public void prepare(DoublePoint P0, DoublePoint P1)
+	{
+		final DoublePoint center = P0.midPoint(P1);
+		final double size = Math.min(Math.abs(P0.horizontalDistanceTo(P1)), Math.abs(P0.verticalDistanceTo(P1)));
+		final double distance = Math.max(1.0, Math.abs(center.getX() + this.approxOriginX) + Math.abs(center.getY() + this.approxOriginY));
+
+		this.cycleTolerance = Math.min(this.periodicityTolerance, size * PERIODICITY_VIEW_FRACTION);
+
+		if (!this.hasDefaultFormula() || size >= PERTURBATION_THRESHOLD * distance)
+			this.precision = Precision.DOUBLE;
+		else if (this.deepZoom)
+			this.precision = Precision.PERTURBATION;
+		else if (this.doubleDouble)
+			this.precision = Precision.DOUBLE_DOUBLE;
+		else
+			this.precision = Precision.DOUBLE;
+
+		if (this.precision == Precision.DOUBLE_DOUBLE)
 		{
-			return true;
+			this.originLowX = this.originX.subtract(new BigDecimal(this.approxOriginX)).doubleValue();
+			this.originLowY = this.originY.subtract(new BigDecimal(this.approxOriginY)).doubleValue();
 		}
 
-		return false;
+		if (this.precision != Precision.PERTURBATION)
+			return;
+
+		final MathContext mc = MathUtil.contextFor(size / distance);
+		final BigDecimal cRe = this.originX.add(new BigDecimal(center.getX()), mc);
+		final BigDecimal cImg = this.originY.add(new BigDecimal(center.getY()), mc);
+
+		if (this.reference != null && this.reference.canExtend(cRe, cImg, this.maxIteration, this.escapeRadius, mc))
+			this.reference = this.reference.extend(this.maxIteration);
+		else if (this.reference == null || !this.reference.matches(cRe, cImg, this.maxIteration, this.escapeRadius, mc))
+			this.reference = ReferenceOrbit.compute(cRe, cImg, this.maxIteration, this.escapeRadius, mc);
+
+		this.referenceX = center.getX();
+		this.referenceY = center.getY();
+
+		if (this.seriesApproximation)
+			this.series = SeriesApproximation.compute(this.reference,
+				Math.abs(P0.horizontalDistanceTo(P1)) / 2.0, Math.abs(P0.verticalDistanceTo(P1)) / 2.0, this.escapeRadius);
+		else
+			this.series = null;
 	}
 
 	/**
 	 * {@inheritDoc}
+	 * 
+	 * Tous les paramètres qui modifient le calcul sont comparés, y compris les raccourcis (tests
+	 * d'intérieur, détection de cycles, approximation par série) qui peuvent changer les pixels
+	 * les plus sensibles.
 	 */
 	@Override
-	public int getColor(final double x, final double y)
+	public boolean sameIterations(ContinuousFractal other)
 	{
-		if (inCardioid(x, y))
-			return this.colorGrad.interpolate(this.maxIteration);
+		return other instanceof Mandelbrot && this.maxIteration == ((Mandelbrot) other).maxIteration && this.sameSettings((Mandelbrot) other);
+	}
 
-		double iteration = 0;
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * Une vue rendue par perturbation doit aussi l'être avec la même référence, puisque les états
+	 * gardés sont des écarts à celle-ci. Les vues en double-double et celles qui estiment les
+	 * distances n'ont pas d'états.
+	 */
+	@Override
+	public boolean resumes(ContinuousFractal previous)
+	{
+		if (!(previous instanceof Mandelbrot))
+			return false;
 
-		double zRe = 0, zImg = 0, temp;
+		final Mandelbrot mandel = (Mandelbrot) previous;
 
-		while (((zRe * zRe + zImg * zImg) < escapeRadius) && (iteration < this.maxIteration))
-		{
-			temp = calculZRe.calculate(zRe, zImg) + x;
-			zImg = calculZImg.calculate(zRe, zImg) + y;
-			zRe = temp;
+		if (this.maxIteration <= mandel.maxIteration || !this.sameSettings(mandel) || this.precision != mandel.precision
+			|| this.precision == Precision.DOUBLE_DOUBLE || this.distanceEstimation)
+			return false;
 
-			iteration++;
-		}
+		return this.precision == Precision.DOUBLE || (this.referenceX == mandel.referenceX && this.referenceY == mandel.referenceY
+			&& this.reference.getCRe().compareTo(mandel.reference.getCRe()) == 0
+			&& this.reference.getCImg().compareTo(mandel.reference.getCImg()) == 0);
+	}
 
-		// On ajuste la couleur pour un gradient continu. Formule de wikipédia.
-		if (iteration < this.maxIteration)
-		{
-			double z = (zRe * zRe) + (zImg * zImg);
-			double n = Math.log((0.5 * Math.log(z)) / Math.log(2)) / Math.log(2);
-			iteration = (iteration + 1) - n;
-		}
+	/**
+	 * Compare tous les paramètres qui modifient le calcul, sauf le nombre maximal d'itérations.
+	 */
+	private boolean sameSettings(Mandelbrot mandel)
+	{
+		return this.escapeRadius == mandel.escapeRadius
+			&& this.calculZRe == mandel.calculZRe && this.calculZImg == mandel.calculZImg && Objects.equals(this.expression, mandel.expression)
+			&& this.smoothing == mandel.smoothing && this.periodicityTolerance == mandel.periodicityTolerance
+			&& this.period3Bulbs == mandel.period3Bulbs && this.deepZoom == mandel.deepZoom && this.doubleDouble == mandel.doubleDouble
+			&& this.seriesApproximation == mandel.seriesApproximation && this.distanceEstimation == mandel.distanceEstimation
+			&& this.originX.compareTo(mandel.originX) == 0 && this.originY.compareTo(mandel.originY) == 0;
+	}
 
-		return this.colorGrad.interpolate(iteration);
+	@Override
+	public boolean sameColors(ContinuousFractal other)
+	{
+		return other instanceof Mandelbrot && this.colorGrad.equals(((Mandelbrot) other).colorGrad);
+	}
+
+	/**
+	 * Le rendu par perturbation n'est implémenté que pour la formule z² + c.
+	 */
+	private boolean hasDefaultFormula()
+	{
+		return this.kernel == Kernel.SQUARE;
+	}
+
+	/**
+	 * Retourne la boucle qui itère la formule.
+	 */
+	public Kernel getKernel()
+	{
+		return this.kernel;
+	}
+
+	@Override
+	public double getZoomLimit()
+	{
+		if (!this.hasDefaultFormula())
+			return DEF_ZOOM_LIMIT;
+		if (this.deepZoom)
+			return DEEP_ZOOM_LIMIT;
+
+		return this.doubleDouble ? DOUBLE_DOUBLE_THRESHOLD : DEF_ZOOM_LIMIT;
 	}
 
 	@Override
@@ -113,11 +1276,13 @@ public class Mandelbrot extends ContinuousFractal
 		return new Mandelbrot.Builder(this).build();
 	}
 
+	@Override
 	public Gradient getColorGradient()
 	{
 		return this.colorGrad;
 	}
 
+	@Override
 	public int getMaxIterations()
 	{
 		return this.maxIteration;
@@ -138,6 +1303,119 @@ public class Mandelbrot extends ContinuousFractal
 		return calculZImg;
 	}
 
+	/**
+	 * Retourne le texte de la formule compilée, ou null si la formule est formée par les
+	 * Calculator.
+	 */
+	public String getFormula()
+	{
+		return this.expression;
+	}
+
+	/**
+	 * Remplace la formule par une formule compilée, comme le fait Builder.formula(...) : la
+	 * formule n'est changée que si elle est valide.
+	 * 
+	 * @throws IllegalArgumentException si la formule n'est pas valide.
+	 */
+	private void setFormula(String expression)
+	{
+		this.formula = FormulaCompiler.compile(expression);
+		this.expression = expression;
+		this.kernel = Kernel.of(this.calculZRe, this.calculZImg, expression);
+		this.interiorTests = this.hasDefaultFormula();
+	}
+
+	public boolean isDeepZoomEnabled()
+	{
+		return this.deepZoom;
+	}
+
+	public boolean isDoubleDoubleEnabled()
+	{
+		return this.doubleDouble;
+	}
+
+	/**
+	 * Retourne la précision choisie pour la dernière vue préparée.
+	 */
+	public Precision getPrecision()
+	{
+		return this.precision;
+	}
+
+	public boolean isSeriesApproximationEnabled()
+	{
+		return this.seriesApproximation;
+	}
+
+	public boolean isPeriod3BulbsEnabled()
+	{
+		return this.period3Bulbs;
+	}
+
+	public boolean isSmoothingEnabled()
+	{
+		return this.smoothing;
+	}
+
+	public boolean isVectorized()
+	{
+		return this.vectorized;
+	}
+
+	public boolean isDistanceEstimationEnabled()
+	{
+		return this.distanceEstimation;
+	}
+
+	public double getPeriodicityTolerance()
+	{
+		return this.periodicityTolerance;
+	}
+
+	/**
+	 * Retourne le nombre de points arrêtés par la détection de cycles depuis la création de cette
+	 * instance.
+	 */
+	public long getPeriodicHits()
+	{
+		return this.periodicHits.sum();
+	}
+
+	/**
+	 * Retourne le nombre de points court-circuités par les tests d'intérieur depuis la création de
+	 * cette instance.
+	 */
+	public long getInteriorHits()
+	{
+		return this.interiorHits.sum();
+	}
+
+	@Override
+	public String getStatistics()
+	{
+		return "Mandelbrot : " + this.getInteriorHits() + " points court-circuités par les tests d'intérieur, "
+			+ this.getPeriodicHits() + " par la détection de cycles, " + this.getResumedOrbits() + " orbites reprises";
+	}
+
+	/**
+	 * Retourne le nombre d'orbites reprises depuis la création de cette instance.
+	 */
+	public long getResumedOrbits()
+	{
+		return this.resumedOrbits.sum();
+	}
+
+	/**
+	 * Retourne le nombre d'itérations sautées par l'approximation par série pour la dernière vue
+	 * préparée.
+	 */
+	public int getSkippedIterations()
+	{
+		return this.precision == Precision.PERTURBATION && this.series != null ? this.series.getSkip() : 0;
+	}
+
 	@Override
 	public double getBaseWidth() 
 	{
@@ -156,6 +1434,41 @@ public class Mandelbrot extends ContinuousFractal
 		this.colorGrad.setMaxPosition(max);
 	}
 
+	/**
+	 * Détection de cycle de Brent : z est comparé à une valeur gardée, remplacée après 1, 2, 4...
+	 * itérations.
+	 */
+	private static final class Cycle
+	{
+		private final double	tolerance;
+		private double			savedRe, savedImg;
+		private int				period	= 1, steps;
+
+		Cycle(double re, double img, double tolerance)
+		{
+			this.savedRe = re;
+			this.savedImg = img;
+			this.tolerance = tolerance;
+		}
+
+		/**
+		 * @return true si z est revenu à la valeur gardée, à la tolérance près.
+		 */
+		boolean closes(double re, double img)
+		{
+			if (Math.abs(re - this.savedRe) < this.tolerance && Math.abs(img - this.savedImg) < this.tolerance)
+				return true;
+			if (++this.steps == this.period)
+			{
+				this.savedRe = re;
+				this.savedImg = img;
+				this.period <<= 1;
+				this.steps = 0;
+			}
+			return false;
+		}
+	}
+
 	/**
 	 * Classe constructrice de Mandelbrot.
 	 */
@@ -165,6 +1478,7 @@ public class Mandelbrot extends ContinuousFractal
 		public static DoublePoint		DEF_DOWN_RIGHT_BOUND;
 		public static int				DEF_MAX_ITR;
 		public static long				DEF_RADIUS;
+		public static double			DEF_PERIODICITY_TOLERANCE;
 		public static Gradient			DEF_COLOR_GRADIENT;
 		public static final Calculator	DEF_CALC_RE		= CalculatorUtil.DEFAULT_CALC_RE;
 		public static final Calculator	DEF_CALC_IMG	= CalculatorUtil.DEFAULT_CALC_IMG;
@@ -175,6 +1489,7 @@ public class Mandelbrot extends ContinuousFractal
 			DEF_DOWN_RIGHT_BOUND = new DoublePoint(1.0, 1.2);
 			DEF_MAX_ITR = 2000;
 			DEF_RADIUS = 1 << 30;
+			DEF_PERIODICITY_TOLERANCE = 1e-12;
 			DEF_COLOR_GRADIENT = new BezierGradient.Builder(DEF_MAX_ITR).beautifulGradient().build();
 		}
 
@@ -185,6 +1500,19 @@ public class Mandelbrot extends ContinuousFractal
 		private double					escapeRadius;
 		private Calculator				ZRe;
 		private Calculator				ZImg;
+		private String					expression;
+		private Formula					formula;
+		private boolean					deepZoom;
+		private boolean					doubleDouble;
+		private boolean					seriesApproximation;
+		private boolean					period3Bulbs;
+		private double					periodicityTolerance;
+		private boolean					smoothing;
+		private boolean					vectorized;
+		private boolean					distanceEstimation;
+		private BigDecimal				originX;
+		private BigDecimal				originY;
+		private ReferenceOrbit			reference;
 
 		public Builder()
 		{
@@ -195,6 +1523,19 @@ public class Mandelbrot extends ContinuousFractal
 			this.colorGrad = Builder.DEF_COLOR_GRADIENT;
 			this.ZRe = Builder.DEF_CALC_RE;
 			this.ZImg = Builder.DEF_CALC_IMG;
+			this.expression = null;
+			this.formula = null;
+			this.deepZoom = true;
+			this.doubleDouble = false;
+			this.seriesApproximation = true;
+			this.period3Bulbs = false;
+			this.periodicityTolerance = Builder.DEF_PERIODICITY_TOLERANCE;
+			this.smoothing = true;
+			this.vectorized = true;
+			this.distanceEstimation = false;
+			this.originX = BigDecimal.ZERO;
+			this.originY = BigDecimal.ZERO;
+			this.reference = null;
 		}
 
 		public Builder(Mandelbrot mandel)
@@ -206,6 +1547,19 @@ public class Mandelbrot extends ContinuousFractal
 			this.colorGrad = mandel.getColorGradient().newInstance();
 			this.ZRe = mandel.getcalculZre();
 			this.ZImg = mandel.getcalculZimg();
+			this.expression = mandel.getFormula();
+			this.formula = mandel.formula;
+			this.deepZoom = mandel.isDeepZoomEnabled();
+			this.doubleDouble = mandel.isDoubleDoubleEnabled();
+			this.seriesApproximation = mandel.isSeriesApproximationEnabled();
+			this.period3Bulbs = mandel.isPeriod3BulbsEnabled();
+			this.periodicityTolerance = mandel.getPeriodicityTolerance();
+			this.smoothing = mandel.isSmoothingEnabled();
+			this.vectorized = mandel.isVectorized();
+			this.distanceEstimation = mandel.isDistanceEstimationEnabled();
+			this.originX = mandel.getOriginX();
+			this.originY = mandel.getOriginY();
+			this.reference = mandel.reference;
 		}
 
 		public Builder upLeftBound(DoublePoint bound)
@@ -235,12 +1589,28 @@ public class Mandelbrot extends ContinuousFractal
 		public Builder calcRe(Calculator re)
 		{
 			this.ZRe = re;
+			this.expression = null;
 			return this;
 		}
 
 		public Builder calcImg(Calculator img)
 		{
 			this.ZImg = img;
+			this.expression = null;
+			return this;
+		}
+
+		/**
+		 * Remplace la formule par une formule complexe de z et c, comme "z^3 + c", compilée en
+		 * bytecode (voir FormulaCompiler). La formule est compilée ici une seule fois : les copies
+		 * de la fractale la partagent. La console la change aussi, par la commande "formula".
+		 * 
+		 * @throws IllegalArgumentException si la formule n'est pas valide.
+		 */
+		public Builder formula(String expression)
+		{
+			this.formula = FormulaCompiler.compile(expression);
+			this.expression = expression;
 			return this;
 		}
 
@@ -250,10 +1620,105 @@ public class Mandelbrot extends ContinuousFractal
 			return this;
 		}
 
+		/**
+		 * Permet ou non le rendu par perturbation, qui se fait automatiquement lorsque la vue
+		 * devient trop petite pour les {@code double}.
+		 */
+		public Builder deepZoom(boolean enabled)
+		{
+			this.deepZoom = enabled;
+			return this;
+		}
+
+		/**
+		 * Permet ou non le calcul en double-double (environ 106 bits) des vues trop petites pour
+		 * les {@code double}, lorsque le zoom profond (plus rapide) n'est pas permis. Le zoom in
+		 * est alors limité à DOUBLE_DOUBLE_THRESHOLD. Dans l'application, la commande "precision
+		 * double double" le choisit à la place du zoom profond.
+		 */
+		public Builder doubleDouble(boolean enabled)
+		{
+			this.doubleDouble = enabled;
+			return this;
+		}
+
+		/**
+		 * Permet ou non de sauter les premières itérations par approximation par série lors du
+		 * rendu par perturbation.
+		 */
+		public Builder seriesApproximation(boolean enabled)
+		{
+			this.seriesApproximation = enabled;
+			return this;
+		}
+
+		/**
+		 * Ajoute les composantes de période 3 aux tests d'intérieur.
+		 */
+		public Builder period3Bulbs(boolean enabled)
+		{
+			this.period3Bulbs = enabled;
+			return this;
+		}
+
+		/**
+		 * Change la tolérance de la détection de cycles. Une tolérance de zéro désactive la
+		 * détection. Elle est réduite, pour chaque vue préparée, à PERIODICITY_VIEW_FRACTION de la
+		 * largeur de la vue.
+		 */
+		public Builder periodicity(double tolerance)
+		{
+			this.periodicityTolerance = tolerance;
+			return this;
+		}
+
+		/**
+		 * Lisse ou non les itérations d'échappement.
+		 */
+		public Builder smoothing(boolean enabled)
+		{
+			this.smoothing = enabled;
+			return this;
+		}
+
+		/**
+		 * Calcule ou non les séries de points avec le noyau SIMD, lorsqu'il est disponible. Les
+		 * itérations sont les mêmes dans les deux cas.
+		 */
+		public Builder vectorized(boolean enabled)
+		{
+			this.vectorized = enabled;
+			return this;
+		}
+
+		/**
+		 * Estime ou non la distance des points à la frontière, pour ombrer les couleurs près de
+		 * celle-ci. Les filaments sont alors visibles même avec peu d'itérations ou sans
+		 * suréchantillonnage. Dans l'application, la commande "shading on" (ou "off") le change.
+		 */
+		public Builder distanceEstimation(boolean enabled)
+		{
+			this.distanceEstimation = enabled;
+			return this;
+		}
+
 		public Mandelbrot build()
 		{
-			return new Mandelbrot(this.colorGrad, this.maxIteration, this.escapeRadius,
-				this.upLeftBound, this.downRightBound, this.ZRe, this.ZImg);
+			Mandelbrot mandel = new Mandelbrot(this.colorGrad, this.maxIteration, this.escapeRadius,
+				this.upLeftBound, this.downRightBound, this.ZRe, this.ZImg, this.expression, this.formula);
+			mandel.deepZoom = this.deepZoom;
+			mandel.doubleDouble = this.doubleDouble;
+			mandel.seriesApproximation = this.seriesApproximation;
+			mandel.period3Bulbs = this.period3Bulbs;
+			mandel.periodicityTolerance = this.periodicityTolerance;
+			mandel.cycleTolerance = this.periodicityTolerance;
+			mandel.smoothing = this.smoothing;
+			mandel.vectorized = this.vectorized;
+			mandel.distanceEstimation = this.distanceEstimation;
+			mandel.setOrigin(this.originX, this.originY);
+			mandel.reference = this.reference;
+
+			return mandel;
 		}
 	}
 
@@ -284,6 +1749,9 @@ public class Mandelbrot extends ContinuousFractal
 		public static final Field	ESCAPE_RADIUS		= new Field("escape radius", "radi((i)|(us))?");
 		public static final Field	UP_LEFT_BOUND		= new Field("up left bound", "up bound", "left bound");
 		public static final Field	DOWN_RIGHT_BOUND	= new Field("down right bound", "down bound", "right bound");
+		public static final Field	FORMULA				= new Field("formula", "formul(a|e)");
+		public static final Field	PRECISION			= new Field("precision", "pr[ée]cision", "deep zoom");
+		public static final Field	SHADING				= new Field("shading", "distance( estimation)?");
 
 		private Field(String name, String... synonyms)
 		{
@@ -292,7 +1760,7 @@ public class Mandelbrot extends ContinuousFractal
 
 		public static Definition[] getValues()
 		{
-			return new Definition[] { MAX_ITERATION, ESCAPE_RADIUS, UP_LEFT_BOUND, DOWN_RIGHT_BOUND };
+			return new Definition[] { MAX_ITERATION, ESCAPE_RADIUS, UP_LEFT_BOUND, DOWN_RIGHT_BOUND, FORMULA, PRECISION, SHADING };
 		}
 
 	}
@@ -362,6 +1830,12 @@ public class Mandelbrot extends ContinuousFractal
 					return this.setUpLeftBound(c.getInstruction());
 				else if (def == Field.DOWN_RIGHT_BOUND)
 					return this.setDownRightBound(c.getInstruction());
+				else if (def == Field.FORMULA)
+					return this.setFormula(c.getInstruction());
+				else if (def == Field.PRECISION)
+					return this.setPrecision(c.getInstruction());
+				else if (def == Field.SHADING)
+					return this.setShading(c.getInstruction());
 			}
 
 			return false;
@@ -445,6 +1919,72 @@ public class Mandelbrot extends ContinuousFractal
 			return false;
 		}
 
+		private boolean setFormula(String s)
+		{
+			Pattern formulaRegex = Pattern.compile("formul(a|e)\\s*[:=]?\\s*(?<f>.+)$");
+			Matcher m = formulaRegex.matcher(s);
+			if (m.find())
+			{
+				try
+				{
+					Mandelbrot.this.setFormula(m.group("f"));
+					return true;
+				}
+				catch (IllegalArgumentException e)
+				{
+					System.out.println(e.getMessage());
+				}
+			}
+
+			return false;
+		}
+
+		/**
+		 * Choisit la précision des vues trop petites pour les {@code double} : "perturbation" (ou
+		 * "deep zoom", par défaut), "double double", ou "double" pour s'en tenir aux
+		 * {@code double}.
+		 */
+		private boolean setPrecision(String s)
+		{
+			if (s.matches(".*(perturbation|deep zoom).*"))
+			{
+				deepZoom = true;
+				return true;
+			}
+
+			if (s.matches(".*double(-| )double.*"))
+			{
+				deepZoom = false;
+				doubleDouble = true;
+				return true;
+			}
+
+			if (s.matches(".*pr[ée]cision\\s*[:=]?\\s*double.*"))
+			{
+				deepZoom = false;
+				doubleDouble = false;
+				return true;
+			}
+
+			return false;
+		}
+
+		/**
+		 * Active ("on") ou désactive ("off") l'ombrage par estimation de distance, ou l'inverse de
+		 * son état si rien n'est précisé.
+		 */
+		private boolean setShading(String s)
+		{
+			if (s.matches(".*\\b(off|no|non|false)\\b.*"))
+				distanceEstimation = false;
+			else if (s.matches(".*\\b(on|yes|oui|true)\\b.*"))
+				distanceEstimation = true;
+			else
+				distanceEstimation = !distanceEstimation;
+
+			return true;
+		}
+
 		private boolean increaseIterations(String s)
 		{
 			Pattern posIntRegex = Pattern.compile(NP.POS_INTEGER);
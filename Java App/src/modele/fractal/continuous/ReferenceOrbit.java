@@ -0,0 +1,167 @@
+package modele.fractal.continuous;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.util.Arrays;
+
+/**
+ * Orbite de référence de haute précision utilisée pour le rendu par perturbation.
+ *
+ * L'orbite Z(n+1) = Z(n)² + C est calculée une seule fois en BigDecimal, pour un point C situé au
+ * centre de la vue, puis conservée en {@code double}. Chaque pixel n'a ensuite qu'à itérer son
+ * écart (petit) à cette orbite, ce qui se fait sans perte en {@code double}.
+ */
+public class ReferenceOrbit
+{
+
+	/**
+	 * Point de référence C, en haute précision.
+	 */
+	private final BigDecimal	cRe;
+	private final BigDecimal	cImg;
+
+	/**
+	 * Les valeurs Z(0), Z(1), ..., Z(length - 1) de l'orbite.
+	 */
+	private final double[]		zRe;
+	private final double[]		zImg;
+
+	/**
+	 * Le nombre de points valides de l'orbite. L'orbite s'arrête lorsque la référence s'échappe ou
+	 * atteint le nombre maximal d'itérations.
+	 */
+	private final int			length;
+
+	/**
+	 * La dernière valeur de l'orbite, en haute précision, pour la prolonger.
+	 */
+	private final BigDecimal	lastRe;
+	private final BigDecimal	lastImg;
+
+	private final int			maxIteration;
+	private final double		escapeRadius;
+	private final int			precision;
+
+	private ReferenceOrbit(BigDecimal cRe, BigDecimal cImg, double[] zRe, double[] zImg, int length, BigDecimal lastRe, BigDecimal lastImg, int maxIteration, double escapeRadius, int precision)
+	{
+		this.cRe = cRe;
+		this.cImg = cImg;
+		this.zRe = zRe;
+		this.zImg = zImg;
+		this.length = length;
+		this.lastRe = lastRe;
+		this.lastImg = lastImg;
+		this.maxIteration = maxIteration;
+		this.escapeRadius = escapeRadius;
+		this.precision = precision;
+	}
+
+	/**
+	 * Calcule l'orbite du point (cRe, cImg) sous la formule z² + c.
+	 *
+	 * @param cRe la partie réelle du point de référence.
+	 * @param cImg la partie imaginaire du point de référence.
+	 * @param maxIteration le nombre maximal d'itérations.
+	 * @param escapeRadius le carré du rayon d'échappement.
+	 * @param mc la précision utilisée pour les calculs.
+	 * @return l'orbite de référence.
+	 */
+	public static ReferenceOrbit compute(BigDecimal cRe, BigDecimal cImg, int maxIteration, double escapeRadius, MathContext mc)
+	{
+		return iterate(cRe, cImg, new double[maxIteration + 1], new double[maxIteration + 1], 0, BigDecimal.ZERO, BigDecimal.ZERO,
+			maxIteration, escapeRadius, mc);
+	}
+
+	/**
+	 * Vérifie si cette orbite peut être prolongée jusqu'à maxIteration pour les paramètres donnés,
+	 * plutôt que recalculée.
+	 */
+	public boolean canExtend(BigDecimal cRe, BigDecimal cImg, int maxIteration, double escapeRadius, MathContext mc)
+	{
+		return this.maxIteration < maxIteration && this.escapeRadius == escapeRadius && this.precision >= mc.getPrecision()
+			&& this.cRe.compareTo(cRe) == 0 && this.cImg.compareTo(cImg) == 0;
+	}
+
+	/**
+	 * Prolonge l'orbite jusqu'à maxIteration, à la même précision. Ses premières valeurs restent
+	 * identiques, ce qui permet de reprendre les orbites des points calculées avec celle-ci.
+	 * 
+	 * @param maxIteration le nouveau nombre maximal d'itérations, plus grand.
+	 * @return l'orbite prolongée.
+	 */
+	public ReferenceOrbit extend(int maxIteration)
+	{
+		final double[] re = Arrays.copyOf(this.zRe, maxIteration + 1);
+		final double[] img = Arrays.copyOf(this.zImg, maxIteration + 1);
+		final MathContext mc = new MathContext(this.precision);
+
+		// La référence s'est échappée : elle ne va pas plus loin.
+		if (this.length <= this.maxIteration)
+			return new ReferenceOrbit(this.cRe, this.cImg, re, img, this.length, this.lastRe, this.lastImg, maxIteration, this.escapeRadius, this.precision);
+
+		final BigDecimal zr = this.lastRe.multiply(this.lastRe, mc).subtract(this.lastImg.multiply(this.lastImg, mc), mc).add(this.cRe, mc);
+		final BigDecimal zi = BigDecimal.valueOf(2).multiply(this.lastRe, mc).multiply(this.lastImg, mc).add(this.cImg, mc);
+
+		return iterate(this.cRe, this.cImg, re, img, this.length, zr, zi, maxIteration, this.escapeRadius, mc);
+	}
+
+	/**
+	 * Itère l'orbite à partir de sa valeur z(n) = (zr, zi), en remplissant les tableaux.
+	 */
+	private static ReferenceOrbit iterate(BigDecimal cRe, BigDecimal cImg, double[] re, double[] img, int n, BigDecimal zr, BigDecimal zi,
+		int maxIteration, double escapeRadius, MathContext mc)
+	{
+		final BigDecimal two = BigDecimal.valueOf(2);
+		BigDecimal temp;
+
+		while (true)
+		{
+			re[n] = zr.doubleValue();
+			img[n] = zi.doubleValue();
+			n++;
+
+			if (n > maxIteration || re[n - 1] * re[n - 1] + img[n - 1] * img[n - 1] >= escapeRadius)
+				break;
+
+			temp = zr.multiply(zr, mc).subtract(zi.multiply(zi, mc), mc).add(cRe, mc);
+			zi = two.multiply(zr, mc).multiply(zi, mc).add(cImg, mc);
+			zr = temp;
+		}
+
+		return new ReferenceOrbit(cRe, cImg, re, img, n, zr, zi, maxIteration, escapeRadius, mc.getPrecision());
+	}
+
+	/**
+	 * Vérifie si cette orbite peut être réutilisée pour les paramètres donnés.
+	 */
+	public boolean matches(BigDecimal cRe, BigDecimal cImg, int maxIteration, double escapeRadius, MathContext mc)
+	{
+		return this.maxIteration == maxIteration && this.escapeRadius == escapeRadius && this.precision >= mc.getPrecision()
+			&& this.cRe.compareTo(cRe) == 0 && this.cImg.compareTo(cImg) == 0;
+	}
+
+	public double[] getRe()
+	{
+		return this.zRe;
+	}
+
+	public double[] getImg()
+	{
+		return this.zImg;
+	}
+
+	public int length()
+	{
+		return this.length;
+	}
+
+	public BigDecimal getCRe()
+	{
+		return this.cRe;
+	}
+
+	public BigDecimal getCImg()
+	{
+		return this.cImg;
+	}
+}
@@ -0,0 +1,163 @@
+package modele.fractal.continuous;
+
+/**
+ * Approximation par série de l'écart des points d'une vue à l'orbite de référence.
+ *
+ * Tant que les écarts restent petits, l'écart d(n) d'un point à la référence est très bien
+ * approximé par un polynôme en dc (l'écart initial) : d(n) ≈ A(n) dc + B(n) dc² + C(n) dc³, où
+ * A(n+1) = 2 Z(n) A(n) + 1, B(n+1) = 2 Z(n) B(n) + A(n)² et C(n+1) = 2 Z(n) C(n) + 2 A(n) B(n).
+ *
+ * On fait avancer les coefficients le long de la référence tant que le polynôme concorde avec les
+ * orbites exactes des coins de la vue. Chaque point de la vue peut alors commencer à l'itération
+ * N plutôt qu'à zéro.
+ *
+ * Les coefficients sont gardés relativement à la taille de la vue (on travaille en u = dc /
+ * size), ce qui les garde de l'ordre des écarts eux-mêmes et évite les débordements des
+ * {@code double} aux grandes profondeurs.
+ */
+public class SeriesApproximation
+{
+
+	/**
+	 * Erreur tolérée entre le polynôme et les orbites exactes des coins, relativement à la taille de
+	 * la vue (l'erreur équivaut à déplacer le point d'au plus cette fraction de la vue).
+	 */
+	public static final double	TOLERANCE	= 1e-6;
+
+	/**
+	 * Le nombre d'itérations qui peuvent être sautées.
+	 */
+	private final int			skip;
+
+	private final double		inverseSize;
+
+	private final double		aRe, aImg, bRe, bImg, cRe, cImg;
+
+	private SeriesApproximation(int skip, double inverseSize, double aRe, double aImg, double bRe, double bImg, double cRe, double cImg)
+	{
+		this.skip = skip;
+		this.inverseSize = inverseSize;
+		this.aRe = aRe;
+		this.aImg = aImg;
+		this.bRe = bRe;
+		this.bImg = bImg;
+		this.cRe = cRe;
+		this.cImg = cImg;
+	}
+
+	/**
+	 * Calcule l'approximation pour une vue centrée sur le point de la référence.
+	 *
+	 * @param reference l'orbite de référence.
+	 * @param halfWidth la demi-largeur de la vue.
+	 * @param halfHeight la demi-hauteur de la vue.
+	 * @param escapeRadius le carré du rayon d'échappement de la fractale.
+	 * @return l'approximation valide sur toute la vue.
+	 */
+	public static SeriesApproximation compute(ReferenceOrbit reference, double halfWidth, double halfHeight, double escapeRadius)
+	{
+		final double[] refRe = reference.getRe();
+		final double[] refImg = reference.getImg();
+		final int refLast = reference.length() - 1;
+
+		final double size = Math.max(halfWidth, halfHeight);
+
+		// Les écarts initiaux des quatre coins, en absolu et relativement à la taille.
+		final double[] dcRe = { -halfWidth, halfWidth, -halfWidth, halfWidth };
+		final double[] dcImg = { -halfHeight, -halfHeight, halfHeight, halfHeight };
+		final double[] dRe = new double[4];
+		final double[] dImg = new double[4];
+
+		double aRe = 0, aImg = 0, bRe = 0, bImg = 0, cRe = 0, cImg = 0;
+		double naRe, naImg, nbRe, nbImg, ncRe, ncImg, temp;
+		int n = 0;
+
+		search:
+		while (n + 1 < refLast)
+		{
+			final double zRe = refRe[n];
+			final double zImg = refImg[n];
+
+			naRe = 2 * (zRe * aRe - zImg * aImg) + size;
+			naImg = 2 * (zRe * aImg + zImg * aRe);
+			nbRe = 2 * (zRe * bRe - zImg * bImg) + aRe * aRe - aImg * aImg;
+			nbImg = 2 * (zRe * bImg + zImg * bRe) + 2 * aRe * aImg;
+			ncRe = 2 * (zRe * cRe - zImg * cImg) + 2 * (aRe * bRe - aImg * bImg);
+			ncImg = 2 * (zRe * cImg + zImg * cRe) + 2 * (aRe * bImg + aImg * bRe);
+
+			final double tolerance = TOLERANCE * Math.sqrt(naRe * naRe + naImg * naImg);
+
+			for (int k = 0; k < 4; k++)
+			{
+				temp = 2 * (zRe * dRe[k] - zImg * dImg[k]) + dRe[k] * dRe[k] - dImg[k] * dImg[k] + dcRe[k];
+				dImg[k] = 2 * (zRe * dImg[k] + zImg * dRe[k] + dRe[k] * dImg[k]) + dcImg[k];
+				dRe[k] = temp;
+
+				// Le coin doit rester sur la référence, sans s'échapper ni nécessiter de rebase.
+				final double pRe = refRe[n + 1] + dRe[k];
+				final double pImg = refImg[n + 1] + dImg[k];
+				final double norm = pRe * pRe + pImg * pImg;
+				if (norm < dRe[k] * dRe[k] + dImg[k] * dImg[k] || norm >= escapeRadius)
+					break search;
+
+				final double uRe = dcRe[k] / size;
+				final double uImg = dcImg[k] / size;
+				final double u2Re = uRe * uRe - uImg * uImg;
+				final double u2Img = 2 * uRe * uImg;
+				final double u3Re = u2Re * uRe - u2Img * uImg;
+				final double u3Img = u2Re * uImg + u2Img * uRe;
+
+				final double errRe = naRe * uRe - naImg * uImg + nbRe * u2Re - nbImg * u2Img + ncRe * u3Re - ncImg * u3Img - dRe[k];
+				final double errImg = naRe * uImg + naImg * uRe + nbRe * u2Img + nbImg * u2Re + ncRe * u3Img + ncImg * u3Re - dImg[k];
+				if (Math.sqrt(errRe * errRe + errImg * errImg) > tolerance)
+					break search;
+			}
+
+			aRe = naRe;
+			aImg = naImg;
+			bRe = nbRe;
+			bImg = nbImg;
+			cRe = ncRe;
+			cImg = ncImg;
+			n++;
+		}
+
+		return new SeriesApproximation(n, 1.0 / size, aRe, aImg, bRe, bImg, cRe, cImg);
+	}
+
+	/**
+	 * Retourne le nombre d'itérations qu'on peut sauter.
+	 */
+	public int getSkip()
+	{
+		return this.skip;
+	}
+
+	/**
+	 * Partie réelle de l'écart à la référence, après getSkip() itérations, d'un point dont l'écart
+	 * initial est (dcRe, dcImg).
+	 */
+	public double re(double dcRe, double dcImg)
+	{
+		final double uRe = dcRe * this.inverseSize;
+		final double uImg = dcImg * this.inverseSize;
+		final double u2Re = uRe * uRe - uImg * uImg;
+		final double u2Img = 2 * uRe * uImg;
+
+		return this.aRe * uRe - this.aImg * uImg + this.bRe * u2Re - this.bImg * u2Img + this.cRe * (u2Re * uRe - u2Img * uImg) - this.cImg * (u2Re * uImg + u2Img * uRe);
+	}
+
+	/**
+	 * Partie imaginaire de l'écart à la référence, après getSkip() itérations, d'un point dont
+	 * l'écart initial est (dcRe, dcImg).
+	 */
+	public double img(double dcRe, double dcImg)
+	{
+		final double uRe = dcRe * this.inverseSize;
+		final double uImg = dcImg * this.inverseSize;
+		final double u2Re = uRe * uRe - uImg * uImg;
+		final double u2Img = 2 * uRe * uImg;
+
+		return this.aRe * uImg + this.aImg * uRe + this.bRe * u2Img + this.bImg * u2Re + this.cRe * (u2Re * uImg + u2Img * uRe) + this.cImg * (u2Re * uRe - u2Img * uImg);
+	}
+}
@@ -0,0 +1,50 @@
+package modele.fractal.continuous;
+
+/**
+ * Itération de z² + c sur plusieurs points à la fois (SIMD).
+ *
+ * L'implémentation, IncubatorVectorKernel, utilise le module jdk.incubator.vector. Elle est dans
+ * sa propre racine de sources (Java App/vector), que seul un build avec ce module compile :
+ *
+ * <pre>
+ * javac --add-modules jdk.incubator.vector -cp [classes de src] -d [classes] $(find vector -name "*.java")
+ * java --add-modules jdk.incubator.vector ...
+ * </pre>
+ *
+ * Mandelbrot la charge par réflexion. Si elle n'a pas été compilée ou si la JVM n'a pas le module,
+ * les points sont simplement calculés un à un.
+ */
+interface VectorKernel
+{
+
+	/**
+	 * Le nom de l'implémentation, chargée par réflexion.
+	 */
+	String	IMPLEMENTATION	= "modele.fractal.continuous.IncubatorVectorKernel";
+
+	/**
+	 * Le nombre de valeurs et de masques de l'état de chaque voie, gardé par l'appelant.
+	 */
+	int		LANE_VALUES		= 9;
+	int		LANE_MASKS		= 3;
+
+	/**
+	 * Retourne le nombre de points traités à la fois.
+	 */
+	int lanes();
+
+	/**
+	 * Itère les points (cRe[k], cImg[k]), pour k dans [0, count[, à partir de z = 0, exactement
+	 * comme la boucle scalaire de Mandelbrot (détection de cycles comprise).
+	 *
+	 * @param zRe reçoit la partie réelle du dernier z de chaque point.
+	 * @param zImg reçoit la partie imaginaire du dernier z de chaque point.
+	 * @param iterations reçoit l'itération (entière) à laquelle chaque point s'est arrêté, ou
+	 *            l'infini si son orbite est périodique.
+	 * @param laneValues, laneMasks, lanePoints l'état des voies, d'au moins lanes() LANE_VALUES,
+	 *            lanes() LANE_MASKS et lanes() valeurs : des tableaux de travail de l'appelant,
+	 *            pour qu'aucun appel n'alloue.
+	 */
+	void iterate(double[] cRe, double[] cImg, int count, int maxIteration, double escapeRadius, double tolerance, double[] zRe,
+		double[] zImg, double[] iterations, double[] laneValues, boolean[] laneMasks, int[] lanePoints);
+}
@@ -1,13 +1,24 @@
 package modele.generator;
 
+import java.math.BigDecimal;
 import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.DoubleToIntFunction;
 
+import javafx.animation.AnimationTimer;
 import javafx.application.Platform;
+import javafx.geometry.Rectangle2D;
+import javafx.scene.image.PixelBuffer;
 import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
 import modele.fractal.ContinuousFractal;
+import modele.gradients.Gradient;
 import modele.navigator.ContFracNav;
-import modele.utils.ColorSampler;
 import modele.utils.Controller;
 import modele.utils.DoublePoint;
 import modele.utils.Function;
@@ -16,16 +27,133 @@ import modele.utils.ThreadKiller;
 public class ContinuousGenerator extends Generator 
 {
 
+	/**
+	 * Le temps de calcul visé pour une tuile.
+	 */
+	private static final double	TARGET_TILE_NANOS	= 4e6;
+
+	/**
+	 * Le nombre minimal de tuiles par Thread, pour que la charge s'équilibre.
+	 */
+	private static final int	TILES_PER_THREAD	= 8;
+
+	/**
+	 * Bornes et alignement de la taille des tuiles. L'alignement garde la grille des étapes de
+	 * génération grossières (jusqu'à 16 pixels) continue d'une tuile à l'autre.
+	 */
+	private static final int	MIN_TILE_SIZE		= 32;
+	private static final int	MAX_TILE_SIZE		= 256;
+	private static final int	TILE_ALIGNMENT		= 16;
+
+	/**
+	 * Le seuil de contraste par défaut du suréchantillonnage adaptatif, en unités de canal.
+	 */
+	public static final double	DEF_SAMPLE_CONTRAST		= 8;
+
+	/**
+	 * Le seuil de contraste maximal des images exportées. À 4 échantillons par côté, il garde
+	 * l'erreur d'un zoom profond à 1 % de celle du suréchantillonnage complet, alors que
+	 * DEF_SAMPLE_CONTRAST, choisi pour l'écran, l'augmente de 8 %.
+	 */
+	public static final double	EXPORT_SAMPLE_CONTRAST	= 1;
+
+	/**
+	 * La vitesse par défaut du défilement des couleurs, en itérations par seconde.
+	 */
+	public static final double	DEF_CYCLING_SPEED		= 20;
+
 	/**
 	 * Le nombre de processeurs utilisés.
 	 */
 	private int		nbrProcessors;
 
+	/**
+	 * Le côté des tuiles, en pixels, ajusté après chaque génération.
+	 */
+	private volatile int	tileSize;
+
+	/**
+	 * La dernière image lancée, dont les pixels connus peuvent être réutilisés. Null si elle a été
+	 * invalidée.
+	 */
+	private Frame			lastFrame;
+
+	/**
+	 * Executée, sur le Thread JavaFx, lorsqu'une tuile est terminée et dessinée.
+	 */
+	private TileFunction	onTileFinished	= TileFunction.doNothing();
+
 	private double	varx;
 	private double	vary;
 	private double	oldWidth;
 	private double	oldHeight;
 
+	/**
+	 * Les façons de faire la dernière étape de génération.
+	 */
+	public enum Renderer
+	{
+		/**
+		 * Calcule chaque pixel.
+		 */
+		SCANLINE,
+
+		/**
+		 * Subdivise l'image en rectangles et remplit ceux dont la bordure est uniforme. L'argument
+		 * de connexité qui le justifie ne vaut que pour z² + c : les autres formules, et les régions
+		 * suréchantillonnées ou ombrées, sont rendues comme par SCANLINE (voir
+		 * PixelRegion.canFill()).
+		 */
+		MARIANI_SILVER,
+
+		/**
+		 * Trace les contours des bandes d'itération et remplit l'intérieur sans le calculer. Suppose
+		 * aussi des bandes connexes : comme pour MARIANI_SILVER, les autres formules et les régions
+		 * suréchantillonnées ou ombrées sont rendues comme par SCANLINE.
+		 */
+		BOUNDARY_TRACE
+	}
+
+	/**
+	 * Le renderer utilisé pour la dernière étape de génération : SCANLINE par défaut, le seul qui
+	 * calcule exactement chaque pixel.
+	 */
+	private Renderer	renderer;
+
+	/**
+	 * Le seuil de contraste du suréchantillonnage adaptatif (voir ColorSampler).
+	 */
+	private double		sampleContrast;
+
+	/**
+	 * Colore l'image terminée par égalisation d'histogramme (voir HistogramEqualizer).
+	 */
+	private boolean		histogramColoring;
+
+	/**
+	 * Les pixels de l'image, que les tuiles et l'animation des couleurs écrivent directement, sur
+	 * le Thread JavaFx. Assigné par newImage(...), appelée dès le constructeur de Generator : le
+	 * champ ne doit pas être initialisé ici.
+	 */
+	private PixelBuffer<IntBuffer>	pixels;
+
+	/**
+	 * L'animation des couleurs en cours, ou null.
+	 */
+	private AnimationTimer			cycling;
+
+	/**
+	 * Vrai pendant qu'une recoloration de l'animation des couleurs est calculée, dans recolored.
+	 * Lu et modifié sur le Thread JavaFx seulement.
+	 */
+	private boolean					recoloring;
+	private int[]					recolored;
+
+	/**
+	 * Les tâches de la dernière recoloration, qui écrivent dans les tuiles de la dernière image.
+	 */
+	private CountDownLatch			recoloringTasks;
+
 	public ContinuousGenerator(ContFracNav nav, int screenSizeX, int screenSizeY) 
 	{
 		super(nav, screenSizeX, screenSizeY, 2, 4);
@@ -40,52 +168,236 @@ public class ContinuousGenerator extends Generator
 		vary = 0;
 		oldWidth = 1.0;
 		oldHeight = 1.0;
+		renderer = Renderer.SCANLINE;
+		sampleContrast = DEF_SAMPLE_CONTRAST;
+		histogramColoring = false;
+		tileSize = 64;
 	}
 
 	@Override
-	protected void render(final int imgWidth, final int imgHeight, final int sample, final int renderingStep, final ThreadKiller killer)
+	protected void render(final int imgWidth, final int imgHeight, final int sample, final int renderingStep, final ThreadKiller killer,
+		final long generation)
 	{
-		final int div = this.nbrProcessors;
+		final List<Tile> tiles = this.createTiles(imgWidth, imgHeight);
+		final int step = (int) Math.pow(2, renderingStep);
+		final LongAdder cost = new LongAdder();
 
-		this.firstStepController = new Controller(div);
-		this.firstStepController.setOnFinish(new Function() 
+		final ContFracNav nav = getNav().clone();
+		nav.getFractal().prepare(nav.getP0(), nav.getP1());
+
+		final Frame frame = new Frame(tiles, this.tileSize, nav, imgWidth, imgHeight, sample, this.sampleContrast, this.histogramColoring);
+		this.awaitRecoloring();
+		final Frame previous = this.lastFrame;
+		this.lastFrame = frame;
+
+		this.finishedController = new Controller(tiles.size());
+		this.finishedController.setOnFinish(new Function() 
 		{
 			public void execute() 
 			{
-				setFirstStepDone(true);
+				// La dernière tuile a pu terminer juste avant que la génération soit remplacée.
+				if (killer.isKilled(generation))
+					return;
+
+				adjustTileSize(cost.sum(), imgWidth * imgHeight);
+
+				if (frame.equalized)
+					equalize(frame, tiles, nav.getFractal(), killer, generation);
+				else
+					setFinished(true);
 			}
 		});
 
-		this.finishedController = new Controller(div);
-		this.finishedController.setOnFinish(new Function() 
+		final Controller finishedRendering = this.finishedController;
+
+		// Première vague : l'étape la plus grossière de toutes les tuiles, puis seconde vague : les
+		// étapes suivantes, tuile par tuile. L'aperçu couvre ainsi toute l'image au plus vite.
+		this.firstStepController = new Controller(tiles.size());
+		this.firstStepController.setOnFinish(new Function() 
 		{
 			public void execute() 
 			{
-				setFinished(true);
+				setFirstStepDone(true);
+				if (step == 1 || killer.isKilled(generation))
+					return;
+
+				for (Tile tile : tiles)
+					exec.submit(createTask(tile, step / 2, 1, step, killer, generation, cost, null, finishedRendering));
 			}
 		});
 
-		final ContFracNav nav = getNav().clone();
+		// Une translation de la vue précédente : on reprend les pixels toujours visibles. Sinon,
+		// pour un zoom de la même fractale, on affiche tout de suite l'image précédente remise à
+		// l'échelle, que les étapes de génération viennent remplacer. Dans les autres cas, l'image
+		// est refaite depuis l'étape la plus grossière.
+		final long[] shift = previous != null ? previous.translationTo(frame) : null;
+		final int[] preview = previous != null && shift == null ? previous.resample(frame) : null;
+
+		// Seul le gradient a changé : les pixels repris sont recolorés par les tâches, en parallèle.
+		// Les couleurs égalisées de l'image précédente le sont aussi, avant d'être égalisées de
+		// nouveau à la fin, au besoin.
+		final boolean recolor = shift != null && (!previous.getSnapshot().sameColors(nav.getFractal()) || previous.equalized);
+
+		// Le nombre maximal d'itérations a augmenté : seules les orbites arrêtées sont reprises.
+		final boolean resume = shift != null && nav.getFractal().resumes(previous.getSnapshot());
+
+		if (preview != null)
+		{
+			this.copyToImage(0, 0, imgWidth, imgHeight, preview);
+			setFirstStepDone(true);
+		}
+
+		for (Tile tile : tiles)
+		{
+			tile.region = new PixelRegion(nav.getFractal(), tile.getWidth(), tile.getHeight(),
+				nav.getP0().getX() + tile.getX() * nav.getWidth() / (double) imgWidth,
+				nav.getP0().getY() + tile.getY() * nav.getHeight() / (double) imgHeight,
+				nav.getWidth() / (double) imgWidth, nav.getHeight() / (double) imgHeight, sample, frame.contrast);
 
-		for (int x = 0; x < div; x++)
+			if (shift != null)
+			{
+				previous.copyTranslated(tile, shift[0], shift[1], resume);
+				if (recolor)
+					tile.region.markStale();
+			}
+			else if (preview != null)
+				tile.region.setPreview(preview, imgWidth, tile.getX(), tile.getY());
+
+			// Avec l'aperçu, la première étape est déjà faite : une seule vague.
+			if (preview != null)
+				exec.submit(createTask(tile, step, 1, step, killer, generation, cost, null, finishedRendering));
+			else
+				exec.submit(createTask(tile, step, step, step, killer, generation, cost, this.firstStepController,
+					step == 1 ? finishedRendering : null));
+		}
+	}
+
+	/**
+	 * Recolore l'image terminée par égalisation d'histogramme, en deux passes parallèles sur les
+	 * tuiles, réparties en une bande par Thread : l'histogramme de chaque bande, puis, une fois les
+	 * histogrammes additionnés, les couleurs. Rien n'est itéré. La génération n'est terminée
+	 * qu'après la seconde passe.
+	 */
+	private void equalize(final Frame frame, final List<Tile> tiles, final ContinuousFractal fractal, final ThreadKiller killer,
+		final long generation)
+	{
+		final int stripes = Math.max(1, Math.min(this.nbrProcessors, tiles.size()));
+		final int[][] histograms = new int[stripes][];
+
+		final Controller recolored = new Controller(stripes);
+		recolored.setOnFinish(() ->
 		{
+			if (!killer.isKilled(generation))
+				setFinished(true);
+		});
 
-			final Runnable task = createTask(x, div, nav, imgWidth, imgHeight, sample, renderingStep, killer, this.firstStepController, this.finishedController);
+		final Controller counted = new Controller(stripes);
+		counted.setOnFinish(() ->
+		{
+			if (killer.isKilled(generation))
+				return;
+
+			final HistogramEqualizer equalizer = new HistogramEqualizer(fractal, histograms);
+			frame.equalizer = equalizer;
+			for (int s = 0; s < stripes; s++)
+			{
+				final int stripe = s;
+				exec.submit(() ->
+				{
+					for (int k = stripe; k < tiles.size(); k += stripes)
+					{
+						final Tile tile = tiles.get(k);
+						tile.busy = true;
+						try
+						{
+							if (killer.isKilled(generation))
+								return;
 
-			exec.submit(task);
+							tile.region.equalize(equalizer);
+							writeImgBuffer(killer, generation, tile, tile.region.getBuffer(), false);
+						}
+						finally
+						{
+							tile.busy = false;
+						}
+					}
+					recolored.finished();
+				});
+			}
+		});
+
+		for (int s = 0; s < stripes; s++)
+		{
+			final int stripe = s;
+			exec.submit(() ->
+			{
+				final int[] histogram = HistogramEqualizer.newHistogram(fractal);
+				for (int k = stripe; k < tiles.size(); k += stripes)
+				{
+					if (killer.isKilled(generation))
+						return;
+					tiles.get(k).region.countIterations(histogram);
+				}
+				histograms[stripe] = histogram;
+				counted.finished();
+			});
 		}
 	}
 
+	/**
+	 * Découpe l'image en tuiles de tileSize pixels de côté, triées du centre de l'image vers
+	 * l'extérieur : le centre, où l'on regarde, est terminé en premier.
+	 */
+	private List<Tile> createTiles(int imgWidth, int imgHeight)
+	{
+		final int size = this.tileSize;
+		final List<Tile> tiles = new ArrayList<Tile>();
+
+		for (int y = 0; y < imgHeight; y += size)
+			for (int x = 0; x < imgWidth; x += size)
+				tiles.add(new Tile(x, y, Math.min(size, imgWidth - x), Math.min(size, imgHeight - y)));
+
+		final double cx = imgWidth / 2.0;
+		final double cy = imgHeight / 2.0;
+		tiles.sort((a, b) -> Double.compare(a.distanceSqTo(cx, cy), b.distanceSqTo(cx, cy)));
+
+		return tiles;
+	}
+
+	/**
+	 * Ajuste la taille des tuiles d'après le coût mesuré de la dernière génération, pour qu'une
+	 * tuile prenne environ TARGET_TILE_NANOS à calculer : assez pour que le coût de distribution
+	 * des tâches soit négligeable, assez peu pour que les Threads terminent ensemble. On garde
+	 * aussi au moins quelques tuiles par Thread.
+	 */
+	private void adjustTileSize(long nanos, int pixels)
+	{
+		if (nanos <= 0 || pixels <= 0)
+			return;
+
+		final double nanosPerPixel = nanos / (double) pixels;
+		double size = Math.sqrt(TARGET_TILE_NANOS / nanosPerPixel);
+		size = Math.min(size, Math.sqrt(pixels / (double) (TILES_PER_THREAD * this.nbrProcessors)));
+
+		final int rounded = ((int) size / TILE_ALIGNMENT) * TILE_ALIGNMENT;
+		this.tileSize = Math.max(MIN_TILE_SIZE, Math.min(MAX_TILE_SIZE, rounded));
+	}
+
+	/**
+	 * Crée la tâche qui fait les étapes de génération fromStep à toStep (des puissances de deux,
+	 * décroissantes) d'une tuile.
+	 *
+	 * @param firstRendering le Controller averti après la première étape, ou null.
+	 * @param finishedRendering le Controller averti après la dernière étape de l'image, ou null.
+	 */
 	private Runnable createTask(
-		final int pos, // Note : l'utilisation de final n'est plus nécéssaire avec Java 8 (puisque
-						// effectivement final), mais bon...
-		final int div,
-		final ContFracNav nav,
-		final int imgWidth,
-		final int imgHeight,
-		final int sample,
-		final int renderingStep,
+		final Tile tile,
+		final int fromStep,
+		final int toStep,
+		final int step,
 		final ThreadKiller killer,
+		final long generation,
+		final LongAdder cost,
 		final Controller firstRendering,
 		final Controller finishedRendering)
 	{
@@ -93,104 +405,90 @@ public class ContinuousGenerator extends Generator
 		{
 			public void run()
 			{
+				// Marquée occupée avant de vérifier le ThreadKiller : une tuile qui n'est pas occupée
+				// après l'arrêt de la génération ne sera plus modifiée.
+				tile.busy = true;
 				try 
 				{
-					final int samplex = sample;
-					final int sampley = sample;
-
-					final double deltax = nav.getWidth() / (double) imgWidth;
-					final double deltay = nav.getHeight() / (double) imgHeight;
-					final double p0x = nav.getP0().getX();
-					final double p0y = nav.getP0().getY();
-					final double fracWidth = nav.getWidth() / (double) div;
-					final int remainder;
-
-					if (pos == div - 1)
-						remainder = imgWidth % div;
-					else
-						remainder = 0;
-
-					final int width = imgWidth / div + remainder;
-
-					final int[] buffer = new int[width * imgHeight];
-					int c;
-					final ColorSampler ave = new ColorSampler(samplex * sampley, 0.05);
-					double x, y;
-
-					boolean renderedOnce = false;
-					int index;
-					final int step = (int) Math.pow(2, renderingStep);
-					// Étape de génération.
+					if (killer.isKilled(generation))
+						return;
+
+					final PixelRegion region = tile.region;
+					final int height = region.getHeight();
+
 					long time = System.nanoTime();
-					long times = 0;
-					for (int var = step; var > 0; var /= 2)
+					region.recolorIfStale();
+					for (int var = fromStep; var >= toStep; var /= 2)
 					{
-						// Sauts en x et y selon l'étape de génération.
-						for (int ky = 0; ky < step; ky += var)
+						// Tuile entièrement reprise de l'image précédente.
+						if (region.isComplete())
 						{
-							for (int kx = 0; kx < step; kx += var)
+							writeImgBuffer(killer, generation, tile, region.getBuffer(), toStep == 1);
+							break;
+						}
+
+						// La dernière étape peut être faite par subdivision ou par traçage, en
+						// réutilisant les pixels des étapes précédentes.
+						if (var == 1 && renderer == Renderer.MARIANI_SILVER && region.canFill())
+						{
+							if (!region.marianiSilver(killer, generation))
+								return;
+						}
+						else if (var == 1 && renderer == Renderer.BOUNDARY_TRACE && region.canFill())
+						{
+							if (!region.boundaryTrace(killer, generation))
+								return;
+						}
+						else
+						{
+							// Sauts en x et y selon l'étape de génération.
+							for (int ky = 0; ky < step; ky += var)
 							{
-								// On s'assure de ne jamais repasser sur un point déjà calculé.
-								// On est sur que ça fonctionne puisque chaque pair (kx, ky) est
-								// atteinte (on le voit à l'affichage) et on rentre autant de fois
-								// ici qu'il y a de pixels à
-								// dessiner dans un des carrés (testé).
-								// (kx & ~ (-2*var)) != 0 <=> kx % (2*var) != 0.
-								if (kx % (2 * var) != 0 || ky % (2 * var) != 0 || var == step)
+								for (int kx = 0; kx < step; kx += var)
 								{
-									// Boucle principale.
-									for (int j = ky; j < imgHeight; j += step)
+									// On s'assure de ne jamais repasser sur un point déjà calculé.
+									// On est sur que ça fonctionne puisque chaque pair (kx, ky) est
+									// atteinte (on le voit à l'affichage) et on rentre autant de fois
+									// ici qu'il y a de pixels à
+									// dessiner dans un des carrés (testé).
+									// (kx & ~ (-2*var)) != 0 <=> kx % (2*var) != 0.
+									if (kx % (2 * var) != 0 || ky % (2 * var) != 0 || var == step)
 									{
-										for (int i = kx; i < width; i += step)
+										// Boucle principale.
+										for (int j = ky; j < height; j += step)
 										{
-											x = i * deltax + pos * fracWidth + p0x;
-											y = j * deltay + p0y;
-
-											// Oversampling.
-
-											ave.add(nav.getFractal().getColor(x, y));
-											if (sample > 1 && ave.addOverThreshold(nav.getFractal().getColor(x + deltax * (samplex - 1) / (double) samplex,
-												y + deltay * (sampley - 1) / (double) sampley)))
-											{
-												for (int p = 1; p < samplex * sampley - 1; p++)
-												{
-													ave.add(nav.getFractal().getColor(x + deltax * (p % samplex) / (double) samplex, y + deltay * (p / samplex) / (double) sampley));
-												}
-											}
-											c = ave.getAverage();
-											ave.reset();
-
-											// Dessin des carrés.
-											for (int py = j; py < j + var && py < imgHeight; py++)
-											{
-												for (int px = i; px < i + var && px < width; px++)
-												{
-													index = width * py + px;
-													buffer[index] = c;
-												}
-											}
+											// Dessin des carrés, calculés ligne par ligne.
+											region.paintRow(kx, j, step, var);
+											if (killer.isKilled(generation))
+												return;
 										}
-										if (killer.isKilled())
-											return;
 									}
 								}
 							}
 						}
-						if (!renderedOnce)
-						{
-							firstRendering.finished();
-							renderedOnce = true;
-						}
-						writeImgBuffer(killer, pos, imgWidth / div, width, imgHeight, imgWidth, buffer);
+
+						final boolean last = var == 1;
+						writeImgBuffer(killer, generation, tile, region.getBuffer(), last);
 					}
-					System.out.println(times);
-					finishedRendering.finished();
-					System.out.println(Thread.currentThread().getName() + " : " + (System.nanoTime() - time) / (double) 1000000 + " ms");
+					cost.add(System.nanoTime() - time);
+
+					// Une tâche d'une génération remplacée ne compte plus.
+					if (killer.isKilled(generation))
+						return;
+
+					if (firstRendering != null)
+						firstRendering.finished();
+					if (finishedRendering != null)
+						finishedRendering.finished();
 				}
 				catch (Exception e) 
 				{
 					e.printStackTrace();
 				}
+				finally
+				{
+					tile.busy = false;
+				}
 			}
 		};
 
@@ -198,20 +496,405 @@ public class ContinuousGenerator extends Generator
 	}
 
 	/**
-	 * Dessine l'array byte[] passé en paramètre sur l'Image, à partir du Thread JavaFx.
+	 * Dessine les pixels d'une tuile sur l'Image, à partir du Thread JavaFx. Si la tuile est
+	 * terminée, la fonction spécifiée par setOnTileFinished(...) est ensuite exécutée.
+	 * 
+	 * Rien n'est envoyé au Thread JavaFx si la génération a déjà été remplacée, et rien n'est
+	 * dessiné si elle l'a été entre temps.
 	 */
-	private void writeImgBuffer(ThreadKiller killer, int pos, int smallWidth, int realWidth, int imgHeight, int imgWidth, int[] buffer)
+	private void writeImgBuffer(ThreadKiller killer, long generation, Tile tile, int[] buffer, boolean tileFinished)
 	{
+		if (killer.isKilled(generation))
+			return;
+
 		Platform.runLater(() ->
 		{
-			if (!killer.isKilled())
+			if (!killer.isKilled(generation))
+			{
+				this.copyToImage(tile.getX(), tile.getY(), tile.getWidth(), tile.getHeight(), buffer);
+				if (tileFinished)
+					onTileFinished.execute(tile);
+			}
+		});
+	}
+
+	/**
+	 * Copie un rectangle de pixels, donnés ligne par ligne, dans l'image. Sur le Thread JavaFx.
+	 */
+	private void copyToImage(int x, int y, int width, int height, int[] source)
+	{
+		final int imgWidth = this.pixels.getWidth();
+
+		this.pixels.updateBuffer(pixelBuffer ->
+		{
+			final int[] image = pixelBuffer.getBuffer().array();
+			for (int j = 0; j < height; j++)
+				System.arraycopy(source, width * j, image, imgWidth * (y + j) + x, width);
+			return new Rectangle2D(x, y, width, height);
+		});
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * 
+	 * L'image est faite sur un PixelBuffer, dans lequel les pixels sont copiés sans PixelWriter.
+	 */
+	@Override
+	protected WritableImage newImage(int width, int height)
+	{
+		this.pixels = new PixelBuffer<IntBuffer>(width, height, IntBuffer.allocate(width * height), PixelFormat.getIntArgbPreInstance());
+		return new WritableImage(this.pixels);
+	}
+
+	/**
+	 * Fait défiler les couleurs de l'image : à chaque rafraîchissement de l'écran, le décalage du
+	 * gradient avance de speed positions par seconde, et l'image terminée est recolorée à partir
+	 * des itérations gardées, sans rien itérer. L'animation attend que la génération en cours
+	 * soit terminée.
+	 * 
+	 * L'animation n'attend jamais la recoloration : tant qu'elle n'est pas terminée, les
+	 * rafraîchissements sont sautés, et le décalage rattrape le temps écoulé à la suivante. Seule
+	 * une nouvelle génération l'attend, avant de reprendre les pixels de l'image.
+	 * 
+	 * @param speed la vitesse de défilement, en itérations par seconde (négative pour reculer).
+	 */
+	public void startColorCycling(final double speed)
+	{
+		ensureOnFXThread();
+		this.stopColorCycling();
+
+		this.cycling = new AnimationTimer()
+		{
+			private long	last	= -1;
+
+			@Override
+			public void handle(long now)
 			{
-				PixelFormat<IntBuffer> format = PixelFormat.getIntArgbPreInstance();
-				getImage().getPixelWriter().setPixels(pos * smallWidth, 0, realWidth, imgHeight, format, buffer, 0, realWidth);
+				// Le temps écoulé pendant une recoloration est rattrapé à la suivante.
+				if (recoloring)
+					return;
+
+				if (this.last >= 0)
+					cycleColors(speed * (now - this.last) / 1e9);
+				this.last = now;
 			}
+		};
+		this.cycling.start();
+	}
+
+	public void stopColorCycling()
+	{
+		if (this.cycling != null)
+		{
+			this.cycling.stop();
+			this.cycling = null;
+		}
+	}
+
+	public boolean isColorCycling()
+	{
+		return this.cycling != null;
+	}
+
+	/**
+	 * Avance le décalage du gradient, puis recolore toutes les tuiles de la dernière image dans
+	 * recolored, en parallèle (une bande de tuiles par Thread), avec une copie du gradient. La
+	 * dernière bande terminée copie recolored dans l'image, sur le Thread JavaFx, si l'image n'a
+	 * pas changé entre-temps. La copie de la fractale utilisée par l'image garde son gradient :
+	 * la prochaine génération voit que les couleurs ont changé et recolore les pixels qu'elle
+	 * reprend. Ne fait rien si une recoloration est en cours ou si l'image n'est pas terminée.
+	 */
+	private void cycleColors(double delta)
+	{
+		final Frame frame = this.lastFrame;
+		if (this.recoloring || frame == null || !allFinished() || frame.imgWidth != this.pixels.getWidth()
+			|| frame.imgHeight != this.pixels.getHeight())
+			return;
+
+		final Gradient gradient = getNav().getFractal().getColorGradient();
+		gradient.setOffset(gradient.getOffset() + delta);
+
+		final Gradient colors = gradient.newInstance();
+		final HistogramEqualizer equalizer = frame.equalizer;
+		final DoubleToIntFunction colorOf = equalizer != null ? iteration -> colors.interpolate(equalizer.position(iteration))
+			: colors::interpolate;
+
+		final int size = frame.imgWidth * frame.imgHeight;
+		if (this.recolored == null || this.recolored.length != size)
+			this.recolored = this.pixels.getBuffer().array().clone();
+
+		final int[] image = this.recolored;
+		final Tile[] tiles = frame.grid;
+		final int stripes = Math.max(1, Math.min(this.nbrProcessors, tiles.length));
+		final AtomicInteger remaining = new AtomicInteger(stripes);
+		final CountDownLatch done = new CountDownLatch(stripes);
+
+		this.recoloring = true;
+		this.recoloringTasks = done;
+		for (int s = 0; s < stripes; s++)
+		{
+			final int stripe = s;
+			exec.execute(() ->
+			{
+				try
+				{
+					for (int k = stripe; k < tiles.length; k += stripes)
+						tiles[k].region.recolorInto(colorOf, image, frame.imgWidth, tiles[k].getX(), tiles[k].getY());
+				}
+				finally
+				{
+					done.countDown();
+					if (remaining.decrementAndGet() == 0)
+						Platform.runLater(() -> this.showRecolored(frame, image));
+				}
+			});
+		}
+	}
+
+	/**
+	 * Attend la fin des tâches de la dernière recoloration, avant qu'une génération reprenne les
+	 * tuiles de la dernière image. Une recoloration ne dure qu'une fraction de rafraîchissement.
+	 */
+	private void awaitRecoloring()
+	{
+		if (this.recoloringTasks == null)
+			return;
+
+		try
+		{
+			this.recoloringTasks.await();
+			this.recoloringTasks = null;
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new RuntimeException("Interrompu pendant la recoloration de l'image.", e);
+		}
+	}
+
+	/**
+	 * Copie l'image recolorée dans les pixels de l'image, si la génération n'a pas été relancée
+	 * depuis. Sur le Thread JavaFx.
+	 */
+	private void showRecolored(Frame frame, int[] image)
+	{
+		this.recoloring = false;
+		if (frame != this.lastFrame || !allFinished() || frame.imgWidth != this.pixels.getWidth() || frame.imgHeight != this.pixels.getHeight())
+			return;
+
+		this.pixels.updateBuffer(pixelBuffer ->
+		{
+			System.arraycopy(image, 0, pixelBuffer.getBuffer().array(), 0, image.length);
+			return null;
 		});
 	}
 
+	@Override
+	public void stop()
+	{
+		this.stopColorCycling();
+		super.stop();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public void invalidate()
+	{
+		this.lastFrame = null;
+	}
+
+	/**
+	 * Une image lancée : ses tuiles et la vue qu'elle représente.
+	 */
+	private static class Frame
+	{
+		/**
+		 * Écart relatif toléré entre les dimensions de deux vues, et écart toléré (en pixels) entre
+		 * une translation et un nombre entier de pixels.
+		 */
+		private static final double			SIZE_TOLERANCE	= 1e-9;
+		private static final double			PIXEL_TOLERANCE	= 1e-3;
+
+		/**
+		 * Les tuiles, rangées ligne par ligne.
+		 */
+		private final Tile[]				grid;
+		private final int					tileSize;
+		private final int					columns;
+
+		private final double				p0x;
+		private final double				p0y;
+		private final double				width;
+		private final double				height;
+		private final BigDecimal			originX;
+		private final BigDecimal			originY;
+
+		/**
+		 * La copie de la fractale utilisée pour calculer l'image.
+		 */
+		private final ContinuousFractal		snapshot;
+		private final int					imgWidth;
+		private final int					imgHeight;
+		private final int					sample;
+		private final double				contrast;
+		private final boolean				equalized;
+
+		/**
+		 * L'égalisation d'histogramme de l'image, une fois calculée, ou null.
+		 */
+		private volatile HistogramEqualizer	equalizer;
+
+		Frame(List<Tile> tiles, int tileSize, ContFracNav nav, int imgWidth, int imgHeight, int sample, double contrast, boolean equalized)
+		{
+			this.tileSize = tileSize;
+			this.columns = (imgWidth + tileSize - 1) / tileSize;
+			this.grid = new Tile[this.columns * ((imgHeight + tileSize - 1) / tileSize)];
+			for (Tile tile : tiles)
+				this.grid[(tile.getY() / tileSize) * this.columns + tile.getX() / tileSize] = tile;
+
+			this.p0x = nav.getP0().getX();
+			this.p0y = nav.getP0().getY();
+			this.width = nav.getWidth();
+			this.height = nav.getHeight();
+			this.originX = nav.getFractal().getOriginX();
+			this.originY = nav.getFractal().getOriginY();
+			this.snapshot = nav.getFractal();
+			this.imgWidth = imgWidth;
+			this.imgHeight = imgHeight;
+			this.sample = sample;
+			this.contrast = contrast;
+			this.equalized = equalized;
+		}
+
+		ContinuousFractal getSnapshot()
+		{
+			return this.snapshot;
+		}
+
+		/**
+		 * Vérifie si l'image {@code next} a les mêmes itérations que celle-ci, ou les continue, et si
+		 * sa vue en est une translation d'un nombre entier de pixels (possiblement nulle).
+		 *
+		 * @return la translation, en pixels, ou null.
+		 */
+		long[] translationTo(Frame next)
+		{
+			if (!next.snapshot.sameIterations(this.snapshot) && !next.snapshot.resumes(this.snapshot)
+				|| next.imgWidth != this.imgWidth || next.imgHeight != this.imgHeight
+				|| next.sample != this.sample || next.contrast != this.contrast || next.originX.compareTo(this.originX) != 0 || next.originY.compareTo(this.originY) != 0
+				|| Math.abs(next.width - this.width) > SIZE_TOLERANCE * this.width
+				|| Math.abs(next.height - this.height) > SIZE_TOLERANCE * this.height)
+				return null;
+
+			final double shiftX = (next.p0x - this.p0x) * this.imgWidth / this.width;
+			final double shiftY = (next.p0y - this.p0y) * this.imgHeight / this.height;
+			final long dx = Math.round(shiftX);
+			final long dy = Math.round(shiftY);
+
+			if (Math.abs(shiftX - dx) > PIXEL_TOLERANCE || Math.abs(shiftY - dy) > PIXEL_TOLERANCE
+				|| Math.abs(dx) >= this.imgWidth || Math.abs(dy) >= this.imgHeight)
+				return null;
+
+			return new long[] { dx, dy };
+		}
+
+		/**
+		 * Remet l'image à l'échelle de la vue de l'image {@code next} (au plus proche voisin), pour
+		 * servir d'aperçu. Les pixels hors de cette image restent transparents.
+		 *
+		 * Seule la vue doit avoir changé : si la fractale de {@code next} n'a pas les mêmes
+		 * itérations que celle-ci et ne les continue pas (une autre formule, un autre rayon, moins
+		 * d'itérations, etc.), l'image n'est pas un aperçu de la suivante.
+		 *
+		 * @return l'aperçu, ligne par ligne, ou null si les deux images ne sont pas comparables.
+		 */
+		int[] resample(Frame next)
+		{
+			if (!next.snapshot.sameIterations(this.snapshot) && !next.snapshot.resumes(this.snapshot)
+				|| next.imgWidth != this.imgWidth || next.imgHeight != this.imgHeight)
+				return null;
+
+			// La position de l'origine de cette image dans le plan de la suivante.
+			final double offsetX = this.originX.subtract(next.originX).doubleValue();
+			final double offsetY = this.originY.subtract(next.originY).doubleValue();
+
+			final int[] columns = new int[next.imgWidth];
+			for (int i = 0; i < next.imgWidth; i++)
+				columns[i] = this.sourcePixel(next.p0x + i * next.width / next.imgWidth - this.p0x - offsetX, this.width, this.imgWidth);
+
+			final int[] preview = new int[next.imgWidth * next.imgHeight];
+			for (int j = 0; j < next.imgHeight; j++)
+			{
+				final int y = this.sourcePixel(next.p0y + j * next.height / next.imgHeight - this.p0y - offsetY, this.height, this.imgHeight);
+				if (y < 0)
+					continue;
+
+				final int row = (y / this.tileSize) * this.columns;
+				for (int i = 0; i < next.imgWidth; i++)
+				{
+					final int x = columns[i];
+					if (x < 0)
+						continue;
+
+					// Les tuiles occupées peuvent être lues : un int est écrit d'un coup.
+					final Tile source = this.grid[row + x / this.tileSize];
+					final PixelRegion region = source.region;
+					if (region != null)
+						preview[next.imgWidth * j + i] = region.getBuffer()[region.getWidth() * (y - source.getY()) + x - source.getX()];
+				}
+			}
+
+			return preview;
+		}
+
+		/**
+		 * Retourne le pixel de cette image le plus près de la position spécifiée (relative à P0),
+		 * ou -1 si elle est hors de l'image.
+		 */
+		private int sourcePixel(double position, double size, int pixels)
+		{
+			final long k = Math.round(position * pixels / size);
+			return k >= 0 && k < pixels ? (int) k : -1;
+		}
+
+		/**
+		 * Copie dans la tuile les pixels connus de cette image qui restent visibles après une
+		 * translation de (dx, dy) pixels.
+		 *
+		 * @param resume vrai si les pixels qui n'ont pas échappé doivent être repris plutôt que
+		 *            copiés.
+		 */
+		void copyTranslated(Tile tile, long dx, long dy, boolean resume)
+		{
+			final PixelRegion region = tile.region;
+
+			// Les lignes de la tuile, découpées selon les tuiles sources qu'elles traversent.
+			for (int j = 0; j < tile.getHeight(); j++)
+			{
+				final long y = tile.getY() + j + dy;
+				if (y < 0 || y >= this.imgHeight)
+					continue;
+
+				int i = (int) Math.max(0, -(tile.getX() + dx));
+				final int end = (int) Math.min(tile.getWidth(), this.imgWidth - (tile.getX() + dx));
+				while (i < end)
+				{
+					final int x = (int) (tile.getX() + i + dx);
+					final Tile source = this.grid[(int) (y / this.tileSize) * this.columns + x / this.tileSize];
+					final int length = Math.min(end - i, source.getX() + source.getWidth() - x);
+					final PixelRegion sourceRegion = source.region;
+
+					if (!source.busy && sourceRegion != null)
+						region.copyRow(sourceRegion, x - source.getX(), (int) y - source.getY(), i, j, length, resume);
+
+					i += length;
+				}
+			}
+		}
+	}
+
 	@Override
 	protected void computeImgSizes()
 	{
@@ -287,6 +970,67 @@ public class ContinuousGenerator extends Generator
 		}
 	}
 
+	/**
+	 * Spécifie la fonction à exécuter, sur le Thread JavaFx, lorsqu'une tuile de l'image est
+	 * terminée et dessinée.
+	 * 
+	 * @param function le code à exécuter.
+	 */
+	public void setOnTileFinished(TileFunction function)
+	{
+		this.onTileFinished = function;
+	}
+
+	public int getTileSize()
+	{
+		return this.tileSize;
+	}
+
+	public Renderer getRenderer()
+	{
+		return this.renderer;
+	}
+
+	/**
+	 * Change le renderer utilisé pour la dernière étape de génération. Prend effet à la prochaine
+	 * génération.
+	 */
+	public void setRenderer(Renderer renderer)
+	{
+		this.renderer = renderer;
+	}
+
+	public boolean isHistogramColoring()
+	{
+		return this.histogramColoring;
+	}
+
+	/**
+	 * Active ou non la coloration par égalisation d'histogramme. Prend effet à la prochaine
+	 * génération : les pixels de l'image courante sont repris et seulement recolorés.
+	 */
+	public void setHistogramColoring(boolean enabled)
+	{
+		this.histogramColoring = enabled;
+	}
+
+	public double getSampleContrast()
+	{
+		return this.sampleContrast;
+	}
+
+	/**
+	 * Change le seuil de contraste du suréchantillonnage adaptatif, en unités de canal (0 à 255) :
+	 * plus il est bas, plus les pixels reçoivent d'échantillons, jusqu'à sample² par pixel. Prend
+	 * effet à la prochaine génération.
+	 */
+	public void setSampleContrast(double contrast)
+	{
+		if (contrast < 0)
+			throw new IllegalArgumentException("Le seuil de contraste doit être positif.");
+		this.sampleContrast = contrast;
+	}
+
 	@Override
 	public ContFracNav getNav() 
 	{
@@ -310,7 +1054,9 @@ public class ContinuousGenerator extends Generator
 	}
 
 	/**
-	 * Crée un nouvel ExecutorService pour le Generator.
+	 * Crée un nouvel ExecutorService pour le Generator. C'est un ForkJoinPool en mode FIFO : les
+	 * tuiles sont prises dans l'ordre où elles ont été soumises, du centre vers l'extérieur, et les
+	 * Threads libres volent le travail des autres.
 	 */
 	@Override
 	public void newExecutor() 
@@ -323,8 +1069,24 @@ public class ContinuousGenerator extends Generator
 	public ContinuousGenerator newGeneratorInstance(int maxWidth, int maxHeight) 
 	{
 		ContinuousGenerator gen = new ContinuousGenerator(this.getNav().clone(), maxWidth, maxHeight);
+		gen.setRenderer(this.renderer);
+		gen.setSampleContrast(this.sampleContrast);
+		gen.setHistogramColoring(this.histogramColoring);
 		gen.new Updater().sample(getSample()).renderingStep(0).update();
 		return gen;
 	}
 
+	/**
+	 * Crée une copie de ce generator dont le seuil de contraste est d'au plus
+	 * EXPORT_SAMPLE_CONTRAST : l'image exportée n'est calculée qu'une fois, et sa qualité compte
+	 * plus que son temps de calcul.
+	 */
+	@Override
+	protected ContinuousGenerator newExportInstance(int maxWidth, int maxHeight)
+	{
+		final ContinuousGenerator gen = this.newGeneratorInstance(maxWidth, maxHeight);
+		gen.setSampleContrast(Math.min(this.sampleContrast, EXPORT_SAMPLE_CONTRAST));
+		return gen;
+	}
+
 }
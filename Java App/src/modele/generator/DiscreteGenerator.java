@@ -24,7 +24,8 @@ public class DiscreteGenerator extends Generator {
 	 * {@inheritDoc}
 	 */
 	@Override
-	protected void render(final int imgWidth, final int imgHeight, final int sample, final int renderginStep, final ThreadKiller threadKiller) 
+	protected void render(final int imgWidth, final int imgHeight, final int sample, final int renderginStep, final ThreadKiller threadKiller,
+		final long generation) 
 	{
 
 		final DiscreteFracNav nav = getNav().clone();
@@ -65,7 +66,7 @@ public class DiscreteGenerator extends Generator {
 							writer.setColor((int) ((i - dx) / scalex), (int) ((j - dy) / scaley), Color.BLUEVIOLET);
 						}
 					}
-					if (threadKiller.isKilled())
+					if (threadKiller.isKilled(generation))
 						return null;
 				}
 				return img;
@@ -74,6 +75,8 @@ public class DiscreteGenerator extends Generator {
 
 		task.setOnSucceeded(event ->
 		{
+			if (threadKiller.isKilled(generation))
+				return;
 			setImage(task.getValue());
 			setFirstStepDone(true);
 			setFinished(true);
@@ -49,11 +49,11 @@ public abstract class Generator implements CommandableNode
 	/**
 	 * Représente la réalisation de la première étape de génération.
 	 */
-	private boolean				firstStepDone;
+	private volatile boolean	firstStepDone;
 	/**
 	 * Représente l'état de la génération.
 	 */
-	private boolean				finished;
+	private volatile boolean	finished;
 	/**
 	 * Passe à vrai lorsque les dimensions de l'image ont été changées par setScreenSizes(...), et
 	 * retombe à faux lorsque l'attribut {@code image} a été modifié pour les prendre en compte.
@@ -120,10 +120,11 @@ public abstract class Generator implements CommandableNode
 	 * Classe particulière utilisée exclusivement pour arrêter des Threads pouvant rouler en
 	 * parallèle.
 	 * 
-	 * On passe aux Threads des copies de la référence {@code threadKiller}, lesquelles ne seront
-	 * pas réassignées même si {@code threadKiller} est ici réassigné. Ça permet de s'assurer
+	 * La même instance sert à toutes les générations : chacune reçoit une époque, que ses Threads
+	 * comparent à l'époque courante. Les Threads d'une génération arrêtée ou remplacée s'arrêtent
+	 * donc d'eux-mêmes.
 	 */
-	protected ThreadKiller		threadKiller;
+	protected final ThreadKiller	threadKiller	= new ThreadKiller();
 
 	/**
 	 * Permet de déterminer si tous les threads en parallèle ont terminés leur première étape de
@@ -152,7 +153,7 @@ public abstract class Generator implements CommandableNode
 		this.setFirstStepDone(false);
 		this.fracNav = nav;
 		this.setScreeSizes(screenSizeX, screenSizeY);
-		this.setImage(new WritableImage(this.computedImgWidth, this.computedImgHeight));
+		this.setImage(this.newImage(this.computedImgWidth, this.computedImgHeight));
 		this.setSample(sample);
 		this.renderingStep = steps;
 		this.commandableInstance = this.new Commander();
@@ -161,6 +162,15 @@ public abstract class Generator implements CommandableNode
 
 	protected void constructorInit() {};
 
+	/**
+	 * Crée l'image dessinée par le Generator, aux dimensions spécifiées. Appelée par le
+	 * constructeur, puis à chaque changement de dimensions.
+	 */
+	protected WritableImage newImage(int width, int height)
+	{
+		return new WritableImage(width, height);
+	}
+
 	/**
 	 * Crée une copie de ce generator, en changeant les dimensions du « frame » circonscrivant les
 	 * dimensions de l'image.
@@ -171,6 +181,19 @@ public abstract class Generator implements CommandableNode
 	 */
 	public abstract Generator newGeneratorInstance(int maxWidth, int maxHeight);
 
+	/**
+	 * Crée la copie de ce generator qui calcule une image exportée. C'est une copie simple, à moins
+	 * qu'une implémentation ne veuille une meilleure qualité pour l'export que pour l'écran.
+	 * 
+	 * @param maxWidth la largeur du « frame » circonscrivant les dimensions de l'image.
+	 * @param maxHeight la hauteur du « frame » circonscrivant les dimensions de l'image.
+	 * @return le nouveau Generator.
+	 */
+	protected Generator newExportInstance(int maxWidth, int maxHeight)
+	{
+		return this.newGeneratorInstance(maxWidth, maxHeight);
+	}
+
 	/**
 	 * Lance la routine de génération dans l'implémentation du Generator.
 	 * 
@@ -180,8 +203,11 @@ public abstract class Generator implements CommandableNode
 	 * @param renderginStep le nombre d'étapes de générations supplémentaires à la génération de
 	 *            base à effectuer.
 	 * @param threadKiller le ThreadKiller passé aux Threads.
+	 * @param generation l'époque de cette génération, que les Threads passent à
+	 *            threadKiller.isKilled(...).
 	 */
-	protected abstract void render(final int imgWidth, final int imgHeight, final int sample, final int renderginStep, final ThreadKiller threadKiller);
+	protected abstract void render(final int imgWidth, final int imgHeight, final int sample, final int renderginStep, final ThreadKiller threadKiller,
+		final long generation);
 
 	/**
 	 * Demande à l'implémentation du generator de créer un nouveau Executeur pour les Threads.
@@ -195,14 +221,14 @@ public abstract class Generator implements CommandableNode
 	public void generate()
 	{
 		if (this.imageSizesChanged)
-			this.setImage(new WritableImage(this.computedImgWidth, this.computedImgHeight));
+			this.setImage(this.newImage(this.computedImgWidth, this.computedImgHeight));
 		this.imageSizesChanged = false;
 
-		threadKiller = new ThreadKiller();
+		final long generation = threadKiller.newGeneration();
 		this.finished = false;
 		this.firstStepDone = false;
 
-		this.render(this.computedImgWidth, this.computedImgHeight, this.sample, this.renderingStep, this.threadKiller);
+		this.render(this.computedImgWidth, this.computedImgHeight, this.sample, this.renderingStep, this.threadKiller, generation);
 	}
 
 	/**
@@ -217,7 +243,7 @@ public abstract class Generator implements CommandableNode
 	public BooleanProperty generateAsPNG(final File f, int maxWidth, int maxHeight)
 	{
 		BooleanProperty finishedProperty = new SimpleBooleanProperty(false);
-		final Generator gen = this.newGeneratorInstance(maxWidth, maxHeight);
+		final Generator gen = this.newExportInstance(maxWidth, maxHeight);
 		gen.setOnFinished(() -> {
 			try 
 			{
@@ -259,6 +285,13 @@ public abstract class Generator implements CommandableNode
 		this.generate();
 	}
 
+	/**
+	 * Indique que les paramètres de la fractale ont changé : les pixels de la dernière image ne
+	 * peuvent plus être réutilisés par la prochaine génération. Ne fait rien pour les
+	 * implémentations qui ne réutilisent pas les pixels.
+	 */
+	public void invalidate() {}
+
 	/**
 	 * Tente d'arrêter les Threads occupés à la génération.
 	 */
@@ -0,0 +1,95 @@
+package modele.generator;
+
+import modele.fractal.ContinuousFractal;
+
+/**
+ * Coloration par égalisation d'histogramme : chaque itération est remplacée par la proportion des
+ * pixels de l'image qui ont échappé avant elle, ramenée sur [0, getMaxIterations()[, avant d'être
+ * passée au gradient de la fractale. Chaque couleur du gradient couvre alors à peu près la même
+ * surface de l'image, quelle que soit la distribution des itérations de la vue.
+ *
+ * L'histogramme compte les itérations entières des pixels connus qui ont échappé. Il est rempli
+ * par bandes de tuiles, une par Thread, puis les bandes sont additionnées.
+ */
+final class HistogramEqualizer
+{
+
+	private final ContinuousFractal	fractal;
+	private final int				maxIteration;
+
+	/**
+	 * cumulative[k] est la proportion des pixels qui ont échappé avant l'itération k.
+	 */
+	private final double[]			cumulative;
+
+	/**
+	 * @param histograms les histogrammes des bandes, créés par newHistogram(...).
+	 */
+	HistogramEqualizer(ContinuousFractal fractal, int[][] histograms)
+	{
+		this.fractal = fractal;
+		this.maxIteration = fractal.getMaxIterations();
+
+		final int bins = histograms[0].length;
+		final long[] merged = new long[bins];
+		long total = 0;
+		for (int[] histogram : histograms)
+		{
+			for (int k = 0; k < bins; k++)
+			{
+				merged[k] += histogram[k];
+				total += histogram[k];
+			}
+		}
+
+		this.cumulative = new double[bins + 1];
+		long sum = 0;
+		for (int k = 0; k < bins; k++)
+		{
+			this.cumulative[k] = total > 0 ? sum / (double) total : k / (double) bins;
+			sum += merged[k];
+		}
+		this.cumulative[bins] = 1;
+	}
+
+	/**
+	 * Crée un histogramme vide pour la fractale : une case par itération entière.
+	 */
+	static int[] newHistogram(ContinuousFractal fractal)
+	{
+		return new int[Math.max(1, fractal.getMaxIterations())];
+	}
+
+	/**
+	 * Compte une itération dans un histogramme, si elle a échappé.
+	 */
+	static void count(int[] histogram, double iteration)
+	{
+		if (iteration < histogram.length)
+			histogram[Math.max(0, (int) iteration)]++;
+	}
+
+	/**
+	 * Retourne la position égalisée de l'itération : la proportion cumulée, interpolée dans sa
+	 * case, ramenée sur [0, maxIteration[. Les itérations qui n'ont pas échappé ne changent pas.
+	 */
+	double position(double iteration)
+	{
+		if (!(iteration < this.maxIteration))
+			return iteration;
+
+		final double clamped = Math.max(0, iteration);
+		final int bin = (int) clamped;
+		final double fraction = this.cumulative[bin] + (clamped - bin) * (this.cumulative[bin + 1] - this.cumulative[bin]);
+
+		return Math.min(fraction * this.maxIteration, Math.nextDown((double) this.maxIteration));
+	}
+
+	/**
+	 * Retourne la couleur égalisée de l'itération.
+	 */
+	int colorOf(double iteration)
+	{
+		return this.fractal.colorOf(this.position(iteration));
+	}
+}
@@ -0,0 +1,1024 @@
+package modele.generator;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.DoubleToIntFunction;
+
+import modele.fractal.ContinuousFractal;
+import modele.fractal.RowBuffers;
+import modele.utils.ColorSampler;
+import modele.utils.ThreadKiller;
+
+/**
+ * Région rectangulaire de l'image, rendue par un seul Thread.
+ *
+ * La région garde, en plus des couleurs, l'itération d'échappement du premier échantillon de
+ * chaque pixel déjà calculé. Les étapes de génération successives et les renderers par
+ * subdivision peuvent ainsi réutiliser les pixels connus plutôt que de les recalculer.
+ *
+ * Les itérations des autres échantillons sont aussi gardées, ce qui permet de recolorer la région
+ * (après un changement de gradient, par exemple) sans rien recalculer. L'état des orbites qui
+ * n'ont pas échappé l'est également, pour les reprendre si le nombre maximal d'itérations augmente.
+ * Si la fractale estime les distances à sa frontière, celle du premier échantillon de chaque
+ * pixel est gardée pour ombrer sa couleur (voir ContinuousFractal.shade(...)).
+ */
+class PixelRegion
+{
+
+	/**
+	 * L'espacement des pixels de vérification calculés avant le traçage de frontières.
+	 */
+	private static final int		TRACE_GRID	= 16;
+
+	/**
+	 * L'ordre des échantillons intermédiaires (voir stratifiedOrder(...)), par nombre
+	 * d'échantillons par côté. Les tableaux ne sont jamais modifiés : les régions les partagent.
+	 */
+	private static final Map<Integer, int[]>	STRATIFIED_ORDERS	= new ConcurrentHashMap<Integer, int[]>();
+
+	private final ContinuousFractal	fractal;
+
+	/**
+	 * Les dimensions de la région, en pixels.
+	 */
+	private final int				width;
+	private final int				height;
+
+	/**
+	 * La position, dans la fractale, du coin supérieur gauche de la région, et la dimension d'un
+	 * pixel.
+	 */
+	private final double			x0;
+	private final double			y0;
+	private final double			deltax;
+	private final double			deltay;
+
+	private final int				sample;
+	private final ColorSampler		ave;
+
+	/**
+	 * Les couleurs de la région, ligne par ligne.
+	 */
+	private final int[]				buffer;
+
+	/**
+	 * L'itération d'échappement de chaque pixel, ou NaN si le pixel n'a pas encore été calculé.
+	 */
+	private final double[]			iterations;
+
+	/**
+	 * L'itération du dernier échantillon de chaque pixel suréchantillonné, ou NaN. Null si on ne
+	 * suréchantillonne pas.
+	 */
+	private final float[]			lastSamples;
+
+	/**
+	 * Les itérations des échantillons intermédiaires, pris seulement lorsque le premier et le
+	 * dernier échantillon diffèrent : sample² - 2 valeurs par pixel concerné, à la position donnée
+	 * par extraOffsets (-1 pour les autres pixels). Les échantillons qui n'ont pas été pris (voir
+	 * sampleColor(...)) sont NaN.
+	 */
+	private final int[]				extraOffsets;
+	private float[]					extraSamples;
+	private int						extraCount;
+
+	/**
+	 * L'ordre dans lequel les échantillons intermédiaires sont pris : chacun est le plus loin
+	 * possible de ceux déjà pris, pour que les premiers couvrent tout le pixel.
+	 */
+	private final int[]				extraOrder;
+
+	/**
+	 * La distance estimée du premier échantillon de chaque pixel à la frontière de la fractale, en
+	 * pixels, ou NaN. Null si la fractale n'estime pas les distances.
+	 */
+	private final float[]			distances;
+
+	/**
+	 * La dimension d'un pixel, qui convertit les distances de la fractale en pixels.
+	 */
+	private final double			pixelSize;
+
+	/**
+	 * L'état des orbites des échantillons qui n'ont pas échappé : sample² états de
+	 * ContinuousFractal.ORBIT_SIZE valeurs par pixel concerné, dans l'ordre des échantillons, à la
+	 * position donnée par orbitOffsets (-1 pour les autres pixels). Un état dont l'itération est
+	 * nulle est vide. Null tant qu'aucune orbite n'est gardée.
+	 */
+	private int[]					orbitOffsets;
+	private double[]				orbits;
+	private int						orbitCount;
+
+	/**
+	 * L'état de l'orbite en cours de calcul.
+	 */
+	private final double[]			orbit		= new double[ContinuousFractal.ORBIT_SIZE];
+
+	/**
+	 * L'itération et la distance du point calculé par iterateWithDistance(...).
+	 */
+	private final double[]			point		= new double[1];
+	private final double[]			distance	= new double[1];
+
+	/**
+	 * Les lignes de points passées à la fractale par computeLine(...), allouées au premier usage :
+	 * les premiers échantillons, puis les derniers.
+	 */
+	private double[]				batchOrbits;
+	private double[]				batchIterations;
+	private double[]				lastOrbits;
+	private double[]				lastIterations;
+	private double[]				batchDistances;
+
+	/**
+	 * Les tableaux de travail de la fractale, réutilisés par tous les appels de la région.
+	 */
+	private final RowBuffers		rowBuffers	= new RowBuffers();
+
+	/**
+	 * Vrai si les couleurs des pixels connus doivent être recalculées à partir des itérations.
+	 */
+	private boolean					stale;
+
+	/**
+	 * Vrai pour les pixels chargés par le traçage de frontières, les seuls dont on peut propager
+	 * l'itération lors du remplissage. Null tant que le traçage n'a pas été utilisé.
+	 */
+	private boolean[]				traced;
+
+	/**
+	 * Vrai si la région a été initialisée avec un aperçu : les étapes de génération grossières
+	 * remplacent alors l'aperçu pixel par pixel plutôt que de le couvrir de carrés.
+	 */
+	private boolean					preview;
+
+	/**
+	 * Le nombre de pixels connus, calculés ou non.
+	 */
+	private int						known;
+
+	/**
+	 * @param contrast le seuil de contraste du suréchantillonnage adaptatif, en unités de canal
+	 *            (voir ColorSampler).
+	 */
+	PixelRegion(ContinuousFractal fractal, int width, int height, double x0, double y0, double deltax, double deltay, int sample,
+		double contrast)
+	{
+		this.fractal = fractal;
+		this.width = width;
+		this.height = height;
+		this.x0 = x0;
+		this.y0 = y0;
+		this.deltax = deltax;
+		this.deltay = deltay;
+		this.sample = sample;
+		this.ave = new ColorSampler(sample * sample, contrast);
+		this.buffer = new int[width * height];
+		this.iterations = new double[width * height];
+		Arrays.fill(this.iterations, Double.NaN);
+
+		if (sample > 1)
+		{
+			this.lastSamples = new float[width * height];
+			Arrays.fill(this.lastSamples, Float.NaN);
+			this.extraOffsets = new int[width * height];
+			Arrays.fill(this.extraOffsets, -1);
+			this.extraSamples = new float[0];
+			this.extraOrder = STRATIFIED_ORDERS.computeIfAbsent(sample, PixelRegion::stratifiedOrder);
+		}
+		else
+		{
+			this.lastSamples = null;
+			this.extraOffsets = null;
+			this.extraOrder = null;
+		}
+
+		if (fractal.estimatesDistance())
+		{
+			this.distances = new float[width * height];
+			Arrays.fill(this.distances, Float.NaN);
+		}
+		else
+			this.distances = null;
+		this.pixelSize = Math.min(Math.abs(deltax), Math.abs(deltay));
+
+		this.known = 0;
+	}
+
+	/**
+	 * Retourne l'itération d'échappement du pixel (i, j), en calculant sa couleur (suréchantillonnée
+	 * au besoin) si ce n'est pas déjà fait.
+	 */
+	double iterationAt(int i, int j)
+	{
+		final int index = this.width * j + i;
+		double iteration = this.iterations[index];
+
+		if (Double.isNaN(iteration))
+		{
+			final double x = this.x0 + i * this.deltax;
+			final double y = this.y0 + j * this.deltay;
+
+			iteration = this.distances != null ? this.iterateWithDistance(index, x, y) : this.iterate(index, 0, x, y);
+			final double last = this.sample > 1 ? this.iterate(index, this.sample * this.sample - 1, this.lastX(x), this.lastY(y)) : Double.NaN;
+			this.set(index, iteration, this.shaded(index, this.sampleColor(index, iteration, last, x, y)));
+		}
+
+		return iteration;
+	}
+
+	/**
+	 * Calcule les pixels encore inconnus parmi les n pixels (i0 + k di, j0 + k dj). Chaque suite
+	 * de pixels inconnus consécutifs est passée à la fractale en un seul appel (une ligne pour leurs
+	 * premiers échantillons et, au besoin, une autre pour leurs derniers), ce qui lui permet de les
+	 * itérer sans allocation ou en parallèle (SIMD).
+	 */
+	void computeLine(int i0, int j0, int di, int dj, int n)
+	{
+		final int size = ContinuousFractal.ORBIT_SIZE;
+		final int s = this.sample;
+
+		if (this.batchIterations == null || this.batchIterations.length < n)
+		{
+			final int capacity = Math.max(n, Math.max(this.width, this.height));
+			this.batchOrbits = new double[capacity * size];
+			this.batchIterations = new double[capacity];
+			this.lastOrbits = new double[capacity * size];
+			this.lastIterations = new double[capacity];
+			this.batchDistances = this.distances != null ? new double[capacity] : null;
+		}
+
+		int k = 0;
+		while (k < n)
+		{
+			while (k < n && !Double.isNaN(this.iterations[this.width * (j0 + k * dj) + i0 + k * di]))
+				k++;
+
+			final int start = k;
+			for (; k < n; k++)
+			{
+				final int index = this.width * (j0 + k * dj) + i0 + k * di;
+				if (!Double.isNaN(this.iterations[index]))
+					break;
+
+				this.loadOrbit(index, 0, this.batchOrbits, (k - start) * size);
+				if (s > 1)
+					this.loadOrbit(index, s * s - 1, this.lastOrbits, (k - start) * size);
+			}
+
+			if (k == start)
+				return;
+
+			final int count = k - start;
+			final double x = this.x0 + (i0 + start * di) * this.deltax;
+			final double y = this.y0 + (j0 + start * dj) * this.deltay;
+			final double dx = di * this.deltax;
+			final double dy = dj * this.deltay;
+
+			if (this.distances != null)
+				this.fractal.getIterations(x, y, dx, dy, count, this.batchOrbits, this.batchIterations, this.batchDistances, this.rowBuffers);
+			else
+				this.fractal.getIterations(x, y, dx, dy, count, this.batchOrbits, this.batchIterations, this.rowBuffers);
+			if (s > 1)
+				this.fractal.getIterations(this.lastX(x), this.lastY(y), dx, dy, count, this.lastOrbits, this.lastIterations, this.rowBuffers);
+
+			for (int c = 0; c < count; c++)
+			{
+				final int index = this.width * (j0 + (start + c) * dj) + i0 + (start + c) * di;
+				final double iteration = this.batchIterations[c];
+				this.storeOrbit(index, 0, iteration, this.batchOrbits, c * size);
+
+				double last = Double.NaN;
+				if (s > 1)
+				{
+					last = this.lastIterations[c];
+					this.storeOrbit(index, s * s - 1, last, this.lastOrbits, c * size);
+				}
+
+				if (this.distances != null)
+					this.distances[index] = (float) (this.batchDistances[c] / this.pixelSize);
+
+				this.set(index, iteration, this.shaded(index, this.sampleColor(index, iteration, last, x + c * dx, y + c * dy)));
+			}
+		}
+	}
+
+	/**
+	 * Calcule les pixels (i0 + k step, j) de la ligne j, puis peint le carré de côté size de
+	 * chacun (voir paintBlock(...)).
+	 */
+	void paintRow(int i0, int j, int step, int size)
+	{
+		if (i0 >= this.width)
+			return;
+
+		this.computeLine(i0, j, step, 0, (this.width - i0 + step - 1) / step);
+
+		for (int i = i0; i < this.width; i += step)
+			this.paintBlock(i, j, size);
+	}
+
+	private double lastX(double x)
+	{
+		return x + this.deltax * (this.sample - 1) / (double) this.sample;
+	}
+
+	private double lastY(double y)
+	{
+		return y + this.deltay * (this.sample - 1) / (double) this.sample;
+	}
+
+	/**
+	 * Retourne la couleur du pixel (i, j), en la calculant si ce n'est pas déjà fait.
+	 */
+	int colorAt(int i, int j)
+	{
+		this.iterationAt(i, j);
+		return this.buffer[this.width * j + i];
+	}
+
+	/**
+	 * Initialise les couleurs (mais pas les itérations) de la région avec un aperçu de toute
+	 * l'image, dans lequel la région commence au pixel (x, y).
+	 */
+	void setPreview(int[] image, int imgWidth, int x, int y)
+	{
+		for (int j = 0; j < this.height; j++)
+			System.arraycopy(image, imgWidth * (y + j) + x, this.buffer, this.width * j, this.width);
+		this.preview = true;
+	}
+
+	/**
+	 * Copie les pixels connus d'une ligne d'une autre région dans les pixels encore inconnus de
+	 * celle-ci.
+	 * 
+	 * Si {@code resume} est vrai, la fractale de cette région continue celle de la source (voir
+	 * ContinuousFractal.resumes(...)) : seuls les pixels dont tous les échantillons ont échappé
+	 * sont copiés. Les autres restent inconnus, mais l'état de leurs orbites est copié pour être
+	 * repris.
+	 */
+	void copyRow(PixelRegion source, int si, int sj, int i, int j, int length, boolean resume)
+	{
+		final int from = source.width * sj + si;
+		final int to = this.width * j + i;
+		final int count = this.sample * this.sample - 2;
+		final int orbitSize = this.sample * this.sample * ContinuousFractal.ORBIT_SIZE;
+		final double limit = resume ? source.fractal.getMaxIterations() : Double.POSITIVE_INFINITY;
+
+		for (int k = 0; k < length; k++)
+		{
+			final double iteration = source.iterations[from + k];
+			if (Double.isNaN(iteration) || !Double.isNaN(this.iterations[to + k]))
+				continue;
+
+			if (source.orbitOffsets != null && source.orbitOffsets[from + k] >= 0)
+			{
+				final int offset = this.reserveOrbits(to + k);
+				System.arraycopy(source.orbits, source.orbitOffsets[from + k], this.orbits, offset, orbitSize);
+			}
+
+			if (!source.escaped(from + k, limit))
+				continue;
+
+			this.set(to + k, iteration, source.buffer[from + k]);
+
+			if (this.distances != null && source.distances != null)
+				this.distances[to + k] = source.distances[from + k];
+
+			if (this.lastSamples != null)
+			{
+				this.lastSamples[to + k] = source.lastSamples[from + k];
+
+				final int offset = source.extraOffsets[from + k];
+				if (offset >= 0)
+				{
+					this.extraOffsets[to + k] = this.reserveExtraSamples();
+					System.arraycopy(source.extraSamples, offset, this.extraSamples, this.extraOffsets[to + k], count);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Vérifie si tous les pixels de la région sont connus.
+	 */
+	boolean isComplete()
+	{
+		return this.known == this.width * this.height;
+	}
+
+	private void set(int index, double iteration, int color)
+	{
+		// La couleur d'abord : un pixel dont l'itération est connue a sa couleur finale.
+		this.buffer[index] = color;
+		this.iterations[index] = iteration;
+		this.known++;
+	}
+
+	/**
+	 * Suréchantillonne un pixel dont le premier échantillon, au point (x, y), et le dernier ont déjà
+	 * été calculés. On ne prend les autres échantillons que si le premier et le dernier diffèrent de
+	 * plus que le seuil de contraste, ou si le pixel est à moins d'un pixel de la frontière (lorsque
+	 * la fractale estime les distances).
+	 * 
+	 * Les échantillons sont alors pris dans l'ordre de extraOrder, jusqu'à ce que la moyenne de leurs
+	 * couleurs soit assez précise (voir ColorSampler.converged()) ou que les sample² échantillons
+	 * aient été pris. Les itérations des échantillons sont gardées pour recolorer le pixel.
+	 */
+	private int sampleColor(int index, double iteration, double last, double x, double y)
+	{
+		final int first = this.fractal.colorOf(iteration);
+
+		if (this.sample == 1)
+			return first;
+
+		final int s = this.sample;
+		ave.reset();
+		ave.add(first);
+
+		this.lastSamples[index] = (float) last;
+
+		if (ave.addOverThreshold(this.fractal.colorOf(last)) || this.distances != null && this.distances[index] < 1)
+		{
+			final int offset = this.reserveExtraSamples();
+			this.extraOffsets[index] = offset;
+			Arrays.fill(this.extraSamples, offset, offset + s * s - 2, Float.NaN);
+
+			for (int k = 0; k < this.extraOrder.length && !ave.converged(); k++)
+			{
+				final int p = this.extraOrder[k];
+				final double extra = this.iterate(index, p, x + this.deltax * (p % s) / (double) s, y + this.deltay * (p / s) / (double) s);
+				this.extraSamples[offset + p - 1] = (float) extra;
+				ave.add(this.fractal.colorOf(extra));
+			}
+		}
+
+		return ave.getAverage();
+	}
+
+	/**
+	 * Ordonne les échantillons intermédiaires d'une grille de sample x sample : chacun est le plus
+	 * loin possible (en distance minimale) du premier, du dernier et de ceux qui le précèdent.
+	 * L'ordre ne dépend que de sample : il est fait une fois, puis lu dans STRATIFIED_ORDERS.
+	 */
+	private static int[] stratifiedOrder(int sample)
+	{
+		final int count = sample * sample;
+		final int[] order = new int[count - 2];
+		final boolean[] taken = new boolean[count];
+		taken[0] = true;
+		taken[count - 1] = true;
+
+		for (int k = 0; k < order.length; k++)
+		{
+			int best = -1, bestDistance = -1;
+			for (int p = 1; p < count - 1; p++)
+			{
+				if (taken[p])
+					continue;
+
+				int distance = Integer.MAX_VALUE;
+				for (int q = 0; q < count; q++)
+				{
+					if (taken[q])
+					{
+						final int di = p % sample - q % sample, dj = p / sample - q / sample;
+						distance = Math.min(distance, di * di + dj * dj);
+					}
+				}
+
+				if (distance > bestDistance)
+				{
+					best = p;
+					bestDistance = distance;
+				}
+			}
+
+			order[k] = best;
+			taken[best] = true;
+		}
+
+		return order;
+	}
+
+	/**
+	 * Vérifie si tous les échantillons connus d'un pixel ont échappé avant l'itération limit. Les
+	 * échantillons qui n'ont pas été pris (NaN) sont ignorés.
+	 */
+	private boolean escaped(int index, double limit)
+	{
+		if (this.iterations[index] >= limit)
+			return false;
+
+		if (this.lastSamples == null || Float.isNaN(this.lastSamples[index]))
+			return true;
+
+		if (this.lastSamples[index] >= limit)
+			return false;
+
+		final int offset = this.extraOffsets[index];
+		if (offset >= 0)
+			for (int k = 0; k < this.sample * this.sample - 2; k++)
+				if (this.extraSamples[offset + k] >= limit)
+					return false;
+
+		return true;
+	}
+
+	/**
+	 * Calcule l'itération de l'échantillon p du pixel, au point (x, y), en reprenant son orbite si
+	 * son état a été gardé. L'état final de l'orbite est gardé si elle n'échappe pas.
+	 * 
+	 * Le point est calculé comme une ligne d'un seul point, avec les tableaux de travail de la
+	 * région.
+	 */
+	private double iterate(int index, int p, double x, double y)
+	{
+		this.loadOrbit(index, p, this.orbit, 0);
+		this.fractal.getIterations(x, y, 0, 0, 1, this.orbit, this.point, this.rowBuffers);
+		this.storeOrbit(index, p, this.point[0], this.orbit, 0);
+
+		return this.point[0];
+	}
+
+	/**
+	 * Calcule l'itération du premier échantillon du pixel, au point (x, y), et sa distance à la
+	 * frontière, par une ligne d'un seul point.
+	 */
+	private double iterateWithDistance(int index, double x, double y)
+	{
+		this.loadOrbit(index, 0, this.orbit, 0);
+		this.fractal.getIterations(x, y, 0, 0, 1, this.orbit, this.point, this.distance, this.rowBuffers);
+		this.storeOrbit(index, 0, this.point[0], this.orbit, 0);
+		this.distances[index] = (float) (this.distance[0] / this.pixelSize);
+
+		return this.point[0];
+	}
+
+	/**
+	 * Ombre la couleur d'un pixel selon sa distance à la frontière, si elle est connue.
+	 */
+	private int shaded(int index, int color)
+	{
+		return this.distances == null ? color : this.fractal.shade(color, this.distances[index]);
+	}
+
+	/**
+	 * Copie dans state, à la position offset, l'état gardé de l'orbite de l'échantillon p du pixel,
+	 * ou un état vide.
+	 */
+	private void loadOrbit(int index, int p, double[] state, int offset)
+	{
+		final int size = ContinuousFractal.ORBIT_SIZE;
+
+		if (this.orbitOffsets != null && this.orbitOffsets[index] >= 0)
+			System.arraycopy(this.orbits, this.orbitOffsets[index] + p * size, state, offset, size);
+		else
+			state[offset + size - 1] = 0;
+	}
+
+	/**
+	 * Garde l'état final de l'orbite de l'échantillon p du pixel, s'il n'a pas échappé, à partir de
+	 * state à la position offset. Sinon, l'état gardé est vidé.
+	 */
+	private void storeOrbit(int index, int p, double iteration, double[] state, int offset)
+	{
+		final int size = ContinuousFractal.ORBIT_SIZE;
+		final boolean kept = this.orbitOffsets != null && this.orbitOffsets[index] >= 0;
+
+		if (iteration >= this.fractal.getMaxIterations() && state[offset + size - 1] != 0)
+		{
+			final int slot = (kept ? this.orbitOffsets[index] : this.reserveOrbits(index)) + p * size;
+			System.arraycopy(state, offset, this.orbits, slot, size);
+		}
+		else if (kept)
+			this.orbits[this.orbitOffsets[index] + p * size + size - 1] = 0;
+	}
+
+	/**
+	 * Réserve la place des états des orbites d'un pixel, vides au départ.
+	 * 
+	 * @return la position de la place réservée.
+	 */
+	private int reserveOrbits(int index)
+	{
+		final int size = this.sample * this.sample * ContinuousFractal.ORBIT_SIZE;
+
+		if (this.orbitOffsets == null)
+		{
+			this.orbitOffsets = new int[this.width * this.height];
+			Arrays.fill(this.orbitOffsets, -1);
+			this.orbits = new double[0];
+		}
+
+		if (this.orbitCount + size > this.orbits.length)
+			this.orbits = Arrays.copyOf(this.orbits, Math.max(2 * this.orbits.length, 64 * size));
+
+		this.orbitOffsets[index] = this.orbitCount;
+		this.orbitCount += size;
+
+		return this.orbitOffsets[index];
+	}
+
+	/**
+	 * Réserve la place des échantillons intermédiaires d'un pixel.
+	 * 
+	 * @return la position de la place réservée.
+	 */
+	private int reserveExtraSamples()
+	{
+		final int count = this.sample * this.sample - 2;
+
+		if (this.extraCount + count > this.extraSamples.length)
+			this.extraSamples = Arrays.copyOf(this.extraSamples, Math.max(2 * this.extraSamples.length, 16 * count));
+
+		final int offset = this.extraCount;
+		this.extraCount += count;
+
+		return offset;
+	}
+
+	/**
+	 * Marque les couleurs des pixels connus comme périmées : elles seront recalculées par
+	 * recolorIfStale().
+	 */
+	void markStale()
+	{
+		this.stale = true;
+	}
+
+	/**
+	 * Recalcule, au besoin, la couleur de chaque pixel connu à partir des itérations de ses
+	 * échantillons, sans rien itérer.
+	 */
+	void recolorIfStale()
+	{
+		if (!this.stale)
+			return;
+
+		this.recolor(this.fractal::colorOf);
+		this.stale = false;
+	}
+
+	/**
+	 * Recalcule la couleur de chaque pixel connu avec l'égalisation d'histogramme spécifiée.
+	 */
+	void equalize(HistogramEqualizer equalizer)
+	{
+		this.recolor(equalizer::colorOf);
+	}
+
+	/**
+	 * Recalcule la couleur de chaque pixel connu avec la fonction colorOf, puis copie les couleurs
+	 * de la région dans l'image, où elle commence au pixel (x, y). Les couleurs ne suivent plus
+	 * la fractale de la région : elles sont marquées comme périmées.
+	 */
+	void recolorInto(DoubleToIntFunction colorOf, int[] image, int imgWidth, int x, int y)
+	{
+		this.recolor(colorOf);
+		this.stale = true;
+
+		for (int j = 0; j < this.height; j++)
+			System.arraycopy(this.buffer, this.width * j, image, imgWidth * (y + j) + x, this.width);
+	}
+
+	/**
+	 * Compte, dans l'histogramme, l'itération du premier échantillon de chaque pixel connu (voir
+	 * HistogramEqualizer.count(...)).
+	 */
+	void countIterations(int[] histogram)
+	{
+		for (int index = 0; index < this.iterations.length; index++)
+			if (!Double.isNaN(this.iterations[index]))
+				HistogramEqualizer.count(histogram, this.iterations[index]);
+	}
+
+	/**
+	 * Recalcule la couleur de chaque pixel connu à partir des itérations de ses échantillons et de
+	 * la fonction colorOf, sans rien itérer.
+	 */
+	private void recolor(DoubleToIntFunction colorOf)
+	{
+		double previous = Double.NaN;
+		int previousColor = 0;
+
+		for (int index = 0; index < this.iterations.length; index++)
+		{
+			final double iteration = this.iterations[index];
+			if (Double.isNaN(iteration))
+				continue;
+
+			if (this.lastSamples == null || Float.isNaN(this.lastSamples[index]))
+			{
+				// Les pixels remplis forment de longues suites de même itération.
+				if (iteration != previous)
+				{
+					previous = iteration;
+					previousColor = colorOf.applyAsInt(iteration);
+				}
+				this.buffer[index] = this.shaded(index, previousColor);
+			}
+			else
+			{
+				ave.reset();
+				ave.add(colorOf.applyAsInt(iteration));
+				ave.add(colorOf.applyAsInt(this.lastSamples[index]));
+
+				final int offset = this.extraOffsets[index];
+				if (offset >= 0)
+					for (int k = 0; k < this.sample * this.sample - 2; k++)
+						if (!Float.isNaN(this.extraSamples[offset + k]))
+							ave.add(colorOf.applyAsInt(this.extraSamples[offset + k]));
+
+				this.buffer[index] = this.shaded(index, ave.getAverage());
+			}
+		}
+	}
+
+	/**
+	 * Donne à tous les pixels du rectangle [i0, i1[ x [j0, j1[ encore inconnus l'itération
+	 * spécifiée, sans les calculer.
+	 */
+	void fill(int i0, int j0, int i1, int j1, double iteration)
+	{
+		final int color = this.fractal.colorOf(iteration);
+
+		for (int j = j0; j < j1; j++)
+		{
+			for (int i = i0; i < i1; i++)
+			{
+				final int index = this.width * j + i;
+				if (Double.isNaN(this.iterations[index]))
+					this.set(index, iteration, color);
+			}
+		}
+	}
+
+	/**
+	 * Colore le carré [i, i + size[ x [j, j + size[ de la couleur du pixel (i, j), pour
+	 * l'affichage des étapes de génération grossières. Les pixels du carré restent inconnus.
+	 */
+	void paintBlock(int i, int j, int size)
+	{
+		final int color = this.colorAt(i, j);
+
+		if (this.preview)
+			return;
+
+		for (int py = j; py < j + size && py < this.height; py++)
+		{
+			for (int px = i; px < i + size && px < this.width; px++)
+			{
+				final int index = this.width * py + px;
+				if (Double.isNaN(this.iterations[index]))
+					this.buffer[index] = color;
+			}
+		}
+	}
+
+	/**
+	 * Vérifie si des pixels de la région peuvent être remplis sans être calculés : il faut un seul
+	 * échantillon par pixel, sans ombrage, pour qu'ils soient colorés comme les pixels calculés, et
+	 * des bandes d'itération connexes (voir ContinuousFractal.hasConnectedBands()).
+	 */
+	boolean canFill()
+	{
+		return this.sample == 1 && this.distances == null && this.fractal.hasConnectedBands();
+	}
+
+	/**
+	 * Rend toute la région par subdivision (Mariani-Silver).
+	 *
+	 * @return faux si le rendu a été interrompu par le ThreadKiller.
+	 */
+	boolean marianiSilver(ThreadKiller killer, long generation)
+	{
+		return this.subdivide(0, 0, this.width - 1, this.height - 1, killer, generation);
+	}
+
+	/**
+	 * Rend le rectangle [i0, i1] x [j0, j1] (bornes incluses) : on calcule sa bordure et, si toute
+	 * la bordure a la même itération, on remplit l'intérieur d'un coup. Sinon, on le coupe en deux
+	 * selon sa plus grande dimension et on recommence avec chaque moitié (qui partagent la colonne
+	 * ou la ligne du milieu, déjà calculée).
+	 *
+	 * Le remplissage est exact pour l'ensemble de Mandelbrot : l'ensemble des points qui atteignent
+	 * une itération donnée est connexe et sans trou, un rectangle dont toute la bordure est dans une
+	 * bande ne peut donc rien contenir d'autre. Avec le lissage, les itérations hors de l'ensemble
+	 * ne sont jamais exactement égales et seul l'intérieur de l'ensemble est rempli.
+	 */
+	private boolean subdivide(int i0, int j0, int i1, int j1, ThreadKiller killer, long generation)
+	{
+		if (killer.isKilled(generation))
+			return false;
+
+		this.computeLine(i0, j0, 1, 0, i1 - i0 + 1);
+		this.computeLine(i0, j1, 1, 0, i1 - i0 + 1);
+		this.computeLine(i0, j0 + 1, 0, 1, j1 - j0 - 1);
+		this.computeLine(i1, j0 + 1, 0, 1, j1 - j0 - 1);
+
+		final double iteration = this.iterationAt(i0, j0);
+		boolean uniform = true;
+
+		for (int i = i0; i <= i1; i++)
+		{
+			uniform &= this.iterationAt(i, j0) == iteration;
+			uniform &= this.iterationAt(i, j1) == iteration;
+		}
+		for (int j = j0 + 1; j < j1; j++)
+		{
+			uniform &= this.iterationAt(i0, j) == iteration;
+			uniform &= this.iterationAt(i1, j) == iteration;
+		}
+
+		if (i1 - i0 < 2 || j1 - j0 < 2)
+			return true;
+
+		if (uniform)
+		{
+			this.fill(i0 + 1, j0 + 1, i1, j1, iteration);
+			return true;
+		}
+
+		// Les petits rectangles sont plus rapides à calculer directement.
+		if ((i1 - i0) * (j1 - j0) <= 16)
+		{
+			for (int j = j0 + 1; j < j1; j++)
+				this.computeLine(i0 + 1, j, 1, 0, i1 - i0 - 1);
+			return true;
+		}
+
+		if (i1 - i0 >= j1 - j0)
+		{
+			final int mid = (i0 + i1) >>> 1;
+			return this.subdivide(i0, j0, mid, j1, killer, generation) && this.subdivide(mid, j0, i1, j1, killer, generation);
+		}
+		else
+		{
+			final int mid = (j0 + j1) >>> 1;
+			return this.subdivide(i0, j0, i1, mid, killer, generation) && this.subdivide(i0, mid, i1, j1, killer, generation);
+		}
+	}
+
+	/**
+	 * Rend toute la région par traçage de frontières, à la façon du mode « boundary trace » de
+	 * Fractint.
+	 *
+	 * On part des bords de la région. Chaque pixel visité est comparé à ses quatre voisins, et les
+	 * voisins d'une autre bande sont visités à leur tour (avec les diagonales adjacentes) : seuls
+	 * les contours des bandes d'itération sont calculés. Chaque pixel restant est ensuite rempli
+	 * avec l'itération de son voisin de gauche, comme dans un remplissage par ligne.
+	 *
+	 * C'est exact pour l'ensemble de Mandelbrot, dont les bandes d'itération sont connexes : une
+	 * bande entourée par une autre touche forcément la frontière de celle-ci, qui a été tracée.
+	 * Les pixels déjà connus par les étapes précédentes servent de vérification : s'ils ne
+	 * concordent pas avec le remplissage, on trace à partir d'eux et on recommence.
+	 *
+	 * Une bande peut tout de même avoir un trou lorsque la région contient l'ensemble au complet
+	 * (une bande en anneau dont les bords de la région ne touchent pas le contour intérieur). On
+	 * calcule donc aussi une grille lâche de pixels de vérification.
+	 *
+	 * @return faux si le rendu a été interrompu par le ThreadKiller.
+	 */
+	boolean boundaryTrace(ThreadKiller killer, long generation)
+	{
+		final int w = this.width;
+		final int h = this.height;
+		final int[] queue = new int[w * h];
+		final boolean[] queued = new boolean[w * h];
+		int head = 0, tail = 0;
+
+		this.traced = new boolean[w * h];
+
+		for (int j = 0; j < h; j += TRACE_GRID)
+			this.computeLine(0, j, TRACE_GRID, 0, (w + TRACE_GRID - 1) / TRACE_GRID);
+
+		for (int i = 0; i < w; i++)
+		{
+			tail = enqueue(queue, queued, tail, i);
+			tail = enqueue(queue, queued, tail, w * (h - 1) + i);
+		}
+		for (int j = 1; j < h - 1; j++)
+		{
+			tail = enqueue(queue, queued, tail, w * j);
+			tail = enqueue(queue, queued, tail, w * j + w - 1);
+		}
+
+		boolean consistent;
+		do
+		{
+			while (head < tail)
+			{
+				final int p = queue[head++];
+				final int x = p % w;
+				final int y = p / w;
+
+				if ((head & 0x3ff) == 0 && killer.isKilled(generation))
+					return false;
+
+				final double center = this.tracedAt(x, y);
+				final boolean ll = x > 0, rr = x < w - 1, uu = y > 0, dd = y < h - 1;
+				final boolean l = ll && this.tracedAt(x - 1, y) != center;
+				final boolean r = rr && this.tracedAt(x + 1, y) != center;
+				final boolean u = uu && this.tracedAt(x, y - 1) != center;
+				final boolean d = dd && this.tracedAt(x, y + 1) != center;
+
+				if (l)
+					tail = enqueue(queue, queued, tail, p - 1);
+				if (r)
+					tail = enqueue(queue, queued, tail, p + 1);
+				if (u)
+					tail = enqueue(queue, queued, tail, p - w);
+				if (d)
+					tail = enqueue(queue, queued, tail, p + w);
+				if (uu && ll && (l || u))
+					tail = enqueue(queue, queued, tail, p - w - 1);
+				if (uu && rr && (r || u))
+					tail = enqueue(queue, queued, tail, p - w + 1);
+				if (dd && ll && (l || d))
+					tail = enqueue(queue, queued, tail, p + w - 1);
+				if (dd && rr && (r || d))
+					tail = enqueue(queue, queued, tail, p + w + 1);
+			}
+
+			// Vérification des pixels connus qui n'ont pas été tracés.
+			consistent = true;
+			for (int j = 0; j < h; j++)
+			{
+				double iteration = Double.NaN;
+				for (int i = 0; i < w; i++)
+				{
+					final int index = w * j + i;
+					if (this.traced[index])
+						iteration = this.iterations[index];
+					else if (!Double.isNaN(this.iterations[index]) && this.iterations[index] != iteration)
+					{
+						tail = enqueue(queue, queued, tail, index);
+						consistent = false;
+					}
+				}
+			}
+		} while (!consistent);
+
+		// Remplissage.
+		for (int j = 0; j < h; j++)
+		{
+			double iteration = Double.NaN;
+			int color = 0;
+			for (int i = 0; i < w; i++)
+			{
+				final int index = w * j + i;
+				if (this.traced[index])
+				{
+					iteration = this.iterations[index];
+				}
+				else if (Double.isNaN(this.iterations[index]))
+				{
+					if (i == 0 || this.iterations[index - 1] != iteration || this.buffer[index - 1] != color)
+						color = this.fractal.colorOf(iteration);
+					this.set(index, iteration, color);
+				}
+			}
+		}
+
+		this.traced = null;
+
+		return true;
+	}
+
+	/**
+	 * Retourne l'itération du pixel (i, j) en le marquant comme chargé par le traçage.
+	 */
+	private double tracedAt(int i, int j)
+	{
+		this.traced[this.width * j + i] = true;
+		return this.iterationAt(i, j);
+	}
+
+	private static int enqueue(int[] queue, boolean[] queued, int tail, int p)
+	{
+		if (!queued[p])
+		{
+			queued[p] = true;
+			queue[tail++] = p;
+		}
+
+		return tail;
+	}
+
+	int getWidth()
+	{
+		return this.width;
+	}
+
+	int getHeight()
+	{
+		return this.height;
+	}
+
+	int[] getBuffer()
+	{
+		return this.buffer;
+	}
+}
@@ -0,0 +1,68 @@
+package modele.generator;
+
+/**
+ * Tuile carrée de l'image, l'unité de travail des Threads de génération. Les tuiles sont petites
+ * devant l'image : un Thread qui termine tôt va chercher d'autres tuiles plutôt que d'attendre que
+ * les autres aient terminé leur bande.
+ */
+public class Tile 
+{
+
+	/**
+	 * La position du coin supérieur gauche de la tuile dans l'image, et ses dimensions, en pixels.
+	 */
+	private final int	x;
+	private final int	y;
+	private final int	width;
+	private final int	height;
+
+	/**
+	 * Les pixels de la tuile, conservés d'une étape de génération à l'autre.
+	 */
+	PixelRegion			region;
+
+	/**
+	 * Vrai pendant qu'une tâche travaille sur la tuile. Les pixels d'une tuile occupée ne peuvent
+	 * être lus par un autre Thread.
+	 */
+	volatile boolean	busy;
+
+	public Tile(int x, int y, int width, int height)
+	{
+		this.x = x;
+		this.y = y;
+		this.width = width;
+		this.height = height;
+	}
+
+	public int getX()
+	{
+		return this.x;
+	}
+
+	public int getY()
+	{
+		return this.y;
+	}
+
+	public int getWidth()
+	{
+		return this.width;
+	}
+
+	public int getHeight()
+	{
+		return this.height;
+	}
+
+	/**
+	 * Retourne le carré de la distance du centre de la tuile au point (cx, cy).
+	 */
+	double distanceSqTo(double cx, double cy)
+	{
+		final double dx = this.x + this.width / 2.0 - cx;
+		final double dy = this.y + this.height / 2.0 - cy;
+
+		return dx * dx + dy * dy;
+	}
+}
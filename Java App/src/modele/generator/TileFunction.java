@@ -0,0 +1,20 @@
+package modele.generator;
+
+/**
+ * Interface fonctionnelle (de
+ * 
+ * <pre>
+ * Tile --> {}
+ * </pre>
+ * 
+ * ) appelée lorsqu'une tuile de l'image est terminée. Le pendant de Function pour les tuiles.
+ */
+public interface TileFunction 
+{
+	public void execute(Tile tile);
+
+	static TileFunction doNothing()
+	{
+		return (tile) -> {};
+	}
+}
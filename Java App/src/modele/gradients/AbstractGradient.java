@@ -2,6 +2,7 @@ package modele.gradients;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -15,6 +16,13 @@ import console.NP;
 import console.implementations.AbstractCommandable;
 import console.implementations.SimpleDefinition;
 
+/**
+ * Les paramètres communs aux gradients.
+ * 
+ * Les paramètres ne sont modifiés que sous le verrou du gradient, après quoi publish() est
+ * appelée : les implémentations y publient une copie immuable d'elles-mêmes, que les Threads de
+ * génération lisent sans verrou.
+ */
 public abstract class AbstractGradient implements Gradient 
 {
 
@@ -47,9 +55,23 @@ public abstract class AbstractGradient implements Gradient
 		this.offset = offset;
 	}
 
+	/**
+	 * Publie les paramètres courants du gradient, après une modification. Appelée sous le verrou
+	 * du gradient.
+	 */
+	protected abstract void publish();
+
+	@Override
+	public synchronized double getOffset()
+	{
+		return this.offset;
+	}
+
+	@Override
 	public synchronized void setOffset(double offset)
 	{
 		this.offset = (offset % this.maximumPosition);
+		this.publish();
 	}
 
 	public synchronized void setParam(double param)
@@ -61,12 +83,36 @@ public abstract class AbstractGradient implements Gradient
 		}
 		else
 			this.param = param;
+		this.publish();
 	}
 
 	@Override
 	public synchronized void setMaxPosition(double max)
 	{
 		this.maximumPosition = max;
+		this.publish();
+	}
+
+	/**
+	 * Deux gradients sont égaux s'ils associent les mêmes couleurs aux mêmes positions.
+	 */
+	@Override
+	public synchronized boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (obj == null || obj.getClass() != this.getClass())
+			return false;
+
+		AbstractGradient other = (AbstractGradient) obj;
+		return this.interpolationType == other.interpolationType && this.param == other.param && this.offset == other.offset
+			&& this.maximumPosition == other.maximumPosition && this.deadColor == other.deadColor;
+	}
+
+	@Override
+	public synchronized int hashCode()
+	{
+		return Objects.hash(this.interpolationType, this.param, this.offset, this.maximumPosition, this.deadColor);
 	}
 
 	/* ********************************************************************************
@@ -121,7 +167,15 @@ public abstract class AbstractGradient implements Gradient
 		@Override
 		protected Feedback tryToExecuteLocally(Command command, Feedback onFail) 
 		{
-			boolean executed = this.executeAsDoer(command);
+			boolean executed;
+
+			// Les commandes modifient les champs directement : on publie le résultat d'un coup.
+			synchronized (AbstractGradient.this)
+			{
+				executed = this.executeAsDoer(command);
+				if (executed)
+					AbstractGradient.this.publish();
+			}
 
 			return executed ? Feedback.EXECUTED : onFail;
 		}
@@ -1,6 +1,10 @@
 package modele.gradients;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import modele.utils.IntColor;
 import modele.utils.Vect;
@@ -8,15 +12,39 @@ import modele.utils.Vect;
 /**
  * On ajoute une layer statique par dessus ColorGradient pour créer (une seule fois, à la
  * construction) l'approximation de l'interpolation.
+ *
+ * Les approximations faites sont gardées en cache, par points de contrôle : les gradients
+ * construits avec les mêmes points, et les copies, partagent leurs couleurs et leur table.
  */
 public class BezierGradient extends ColorGradient 
 {
 
+	/**
+	 * Le nombre d'approximations gardées en cache.
+	 */
+	private static final int	CACHE_SIZE	= 16;
+
+	private static final Map<ControlPoints, int[]>	APPROXIMATIONS	= Collections.synchronizedMap(new LinkedHashMap<ControlPoints, int[]>(CACHE_SIZE, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<ControlPoints, int[]> eldest)
+		{
+			return this.size() > CACHE_SIZE;
+		}
+	});
+
 	public BezierGradient(InterpolationType interType, double maxPosition, double var, double offset, int deadColor, List<C> colorPoints, int nbrPointsApproximation)
 	{
 		super(interType, maxPosition, var, offset, deadColor, makeColorArray(colorPoints, nbrPointsApproximation, interType));
 	}
 
+	private BezierGradient(BezierGradient source)
+	{
+		super(source);
+	}
+
 	public static class Builder extends BezierGradientBuilder
 	{
 		public Builder(double dimY) {
@@ -37,14 +65,66 @@ public class BezierGradient extends ColorGradient
 			return colors;
 		}
 
-		return makeBezierApproximation(colorPoints, nbrPointsApproximation, interType);
+		colorPoints.sort(null);
+		final ControlPoints key = new ControlPoints(colorPoints, nbrPointsApproximation, interType);
+
+		int[] colors = APPROXIMATIONS.get(key);
+		if (colors == null)
+		{
+			colors = makeBezierApproximation(colorPoints, nbrPointsApproximation, interType);
+			APPROXIMATIONS.put(key, colors);
+		}
+
+		return colors;
+	}
+
+	/**
+	 * Clé du cache des approximations : les points de contrôle triés, le nombre de points de
+	 * l'approximation et le type d'interpolation.
+	 */
+	private static final class ControlPoints
+	{
+		private final double[]			positions;
+		private final int[]				colors;
+		private final int				nbrPointsApproximation;
+		private final InterpolationType	interType;
+
+		ControlPoints(List<C> colorPoints, int nbrPointsApproximation, InterpolationType interType)
+		{
+			this.positions = new double[colorPoints.size()];
+			this.colors = new int[colorPoints.size()];
+			for (int i = 0; i < colorPoints.size(); i++)
+			{
+				this.positions[i] = colorPoints.get(i).getPosition();
+				this.colors[i] = colorPoints.get(i).getColor();
+			}
+			this.nbrPointsApproximation = nbrPointsApproximation;
+			this.interType = interType;
+		}
+
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof ControlPoints))
+				return false;
+
+			final ControlPoints other = (ControlPoints) obj;
+			return this.nbrPointsApproximation == other.nbrPointsApproximation && this.interType == other.interType
+				&& Arrays.equals(this.positions, other.positions) && Arrays.equals(this.colors, other.colors);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return 31 * (31 * (31 * Arrays.hashCode(this.positions) + Arrays.hashCode(this.colors)) + this.nbrPointsApproximation)
+				+ this.interType.hashCode();
+		}
 	}
 
 	private static int[] makeBezierApproximation(List<C> colorPoints, int nbrPointsApproximation, InterpolationType interType)
 	{
 		int[] bezierApproxColors = new int[nbrPointsApproximation * colorPoints.size() * 3];
 
-		colorPoints.sort(null);
 		double maxPos = colorPoints.get(colorPoints.size() - 1).getPosition();
 		double distance = maxPos / (double) (nbrPointsApproximation * colorPoints.size());
 
@@ -68,23 +148,7 @@ public class BezierGradient extends ColorGradient
 
 			d1 = p2.minus(p3).plus(p1.minus(p2)).normalized().times(p2.minus(p1).length() * factor).plus(p2);
 
-			double length = p2.x - p1.x;
-			double off = (distance - (p1.x % distance)) / length;
-			int nbrPoints = (int) (p2.x / distance) - (int) (p1.x / distance);
-			for (int x = 0; x < nbrPoints; x++)
-			{
-				double p = off + x / (double) nbrPoints;
-				double k = Math.pow(1 - p, 3) * p1.y + 3 * p * Math.pow(1 - p, 2) * d0.y + 3 * (1 - p) * Math.pow(p, 2) * d1.y + Math.pow(p, 3) * p2.y;
-				try 
-				{
-					bezierApproxColors[(arrayPos) * 3 + colorNo] = between0And256((int)k);
-				}
-				catch (Exception e) 
-				{
-					e.printStackTrace();
-				}
-				arrayPos++;
-			}
+			arrayPos = approximateSegment(bezierApproxColors, arrayPos, colorNo, distance, p1, d0, d1, p2);
 
 			for (int i = 1; i < colorPoints.size() - 2; i++)
 			{
@@ -99,23 +163,7 @@ public class BezierGradient extends ColorGradient
 				d0 = d1.minus(p1).times(-1).plus(p1);
 				d1 = p2.minus(p3).plus(p1.minus(p2)).normalized().times(p2.minus(p1).length() * factor).plus(p2);
 
-				length = p2.x - p1.x;
-				off = (distance - (p1.x % distance)) / length;
-				nbrPoints = (int) (p2.x / distance) - (int) (p1.x / distance);
-				for (int x = 0; x < nbrPoints; x++)
-				{
-					double p = off + x / (double) nbrPoints;
-					double k = Math.pow(1 - p, 3) * p1.y + 3 * p * Math.pow(1 - p, 2) * d0.y + 3 * (1 - p) * Math.pow(p, 2) * d1.y + Math.pow(p, 3) * p2.y;
-					try 
-					{
-						bezierApproxColors[(arrayPos) * 3 + colorNo] = between0And256((int)k);
-					}
-					catch (Exception e) 
-					{
-						e.printStackTrace();
-					}
-					arrayPos++;
-				}
+				arrayPos = approximateSegment(bezierApproxColors, arrayPos, colorNo, distance, p1, d0, d1, p2);
 			}
 
 			p0 = p1;
@@ -132,23 +180,7 @@ public class BezierGradient extends ColorGradient
 			else
 				d1 = p1.minus(p2).times(factor).plus(p2);
 
-			length = p2.x - p1.x;
-			off = (distance - (p1.x % distance)) / length;
-			nbrPoints = (int) (p2.x / distance) - (int) (p1.x / distance);
-			for (int x = 0; x < nbrPoints; x++)
-			{
-				double p = off + x / (double) nbrPoints;
-				double k = Math.pow(1 - p, 3) * p1.y + 3 * p * Math.pow(1 - p, 2) * d0.y + 3 * (1 - p) * Math.pow(p, 2) * d1.y + Math.pow(p, 3) * p2.y;
-				try 
-				{
-					bezierApproxColors[(arrayPos) * 3 + colorNo] = between0And256((int)k);
-				}
-				catch (Exception e) 
-				{
-					e.printStackTrace();
-				}
-				arrayPos++;
-			}
+			arrayPos = approximateSegment(bezierApproxColors, arrayPos, colorNo, distance, p1, d0, d1, p2);
 
 			maxArrayPos = Math.max(maxArrayPos, arrayPos - 1);
 		}
@@ -165,6 +197,36 @@ public class BezierGradient extends ColorGradient
 		return makeColorArray(bezierApproxColors);
 	}
 
+	/**
+	 * Échantillonne, à tous les distance en x, le canal colorNo de la courbe de Bézier cubique
+	 * (p1, d0, d1, p2), à partir de la case arrayPos.
+	 * 
+	 * @return la case qui suit le dernier échantillon.
+	 */
+	private static int approximateSegment(int[] bezierApproxColors, int arrayPos, int colorNo, double distance, Vect p1, Vect d0, Vect d1, Vect p2)
+	{
+		final double length = p2.x - p1.x;
+		final double off = (distance - (p1.x % distance)) / length;
+		final int nbrPoints = (int) (p2.x / distance) - (int) (p1.x / distance);
+		for (int x = 0; x < nbrPoints; x++)
+		{
+			final double p = off + x / (double) nbrPoints;
+			final double q = 1 - p;
+			final double k = q * q * q * p1.y + 3 * p * q * q * d0.y + 3 * q * p * p * d1.y + p * p * p * p2.y;
+			try 
+			{
+				bezierApproxColors[(arrayPos) * 3 + colorNo] = between0And256((int)k);
+			}
+			catch (Exception e) 
+			{
+				e.printStackTrace();
+			}
+			arrayPos++;
+		}
+
+		return arrayPos;
+	}
+
 	private static int between0And256(int pos)
 	{
 		if (pos < 0)
@@ -198,6 +260,15 @@ public class BezierGradient extends ColorGradient
 			return new Vect(colorPoint.getPosition(), IntColor.blue(colorPoint.getColor()));
 	}
 
+	/**
+	 * Crée une copie de ce gradient, qui partage ses couleurs et sa table.
+	 */
+	@Override
+	public synchronized BezierGradient newInstance()
+	{
+		return new BezierGradient(this);
+	}
+
 	public String toString()
 	{
 		String s = "{";
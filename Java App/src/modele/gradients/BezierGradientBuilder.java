@@ -67,7 +67,12 @@ public abstract class BezierGradientBuilder extends GradientBuilder<BezierGradie
 
 	public BezierGradient build()
 	{
-		return new BezierGradient(this.interType, this.maximumPosition, this.param, this.offset, this.deadColor, this.colors, this.paletteSize);
+		final BezierGradient gradient = new BezierGradient(this.interType, this.maximumPosition, this.param, this.offset, this.deadColor, this.colors,
+			this.paletteSize);
+		if (this.tableSize != gradient.getTableSize())
+			gradient.setTableSize(this.tableSize);
+
+		return gradient;
 	}
 
 }
@@ -1,5 +1,9 @@
 package modele.gradients;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 
 import modele.utils.IntColor;
@@ -7,8 +11,45 @@ import modele.utils.IntColor;
 public class ColorGradient extends AbstractGradient 
 {
 
-	protected final int[]	colors;
-	private double			stepSize;
+	/**
+	 * Le nombre d'entrées par défaut de la table des couleurs.
+	 */
+	public static final int		DEF_TABLE_SIZE	= 1 << 16;
+
+	/**
+	 * Le nombre de tables gardées en cache, pour les gradients qui ont les mêmes couleurs.
+	 */
+	private static final int	TABLE_CACHE_SIZE	= 16;
+
+	/**
+	 * Les dernières tables faites, par couleurs et par taille. Une table n'est jamais modifiée
+	 * après sa création : les gradients qui ont les mêmes couleurs la partagent.
+	 */
+	private static final Map<TableKey, int[]>	TABLES	= Collections.synchronizedMap(new LinkedHashMap<TableKey, int[]>(TABLE_CACHE_SIZE, 0.75f, true)
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<TableKey, int[]> eldest)
+		{
+			return this.size() > TABLE_CACHE_SIZE;
+		}
+	});
+
+	protected final int[]		colors;
+
+	/**
+	 * Les couleurs du gradient, interpolées sur tableSize entrées (une puissance de deux) : l'entrée
+	 * k est la couleur à la fraction k / tableSize du gradient. Ne dépend que des couleurs : elle n'est
+	 * refaite que si tableSize change, et elle est partagée par les copies du gradient.
+	 */
+	private int[]				table;
+	private int					tableSize		= DEF_TABLE_SIZE;
+
+	/**
+	 * La dernière copie publiée des paramètres du gradient, seule lue par interpolate(...).
+	 */
+	private volatile Snapshot	snapshot;
 
 	protected ColorGradient(InterpolationType interpolationType, double maxPos, double var, double offset, int deadColor, int... colors)
 	{
@@ -17,38 +58,220 @@ public class ColorGradient extends AbstractGradient
 		setMaxPosition(maxPos);
 	}
 
-	public synchronized int interpolate(double position)
+	/**
+	 * Copie un gradient, en partageant ses couleurs et sa table, qui ne sont jamais modifiées. Doit
+	 * être appelé sous le verrou de source.
+	 */
+	protected ColorGradient(ColorGradient source)
+	{
+		super(source.interpolationType, source.maximumPosition, source.param, source.offset, source.deadColor);
+		this.colors = source.colors;
+		this.table = source.table;
+		this.tableSize = source.tableSize;
+		this.publish();
+	}
+
+	/**
+	 * Retourne la couleur de la position spécifiée, sans verrou : les Threads de génération
+	 * l'appellent pour chaque échantillon.
+	 */
+	public int interpolate(double position)
+	{
+		return this.snapshot.interpolate(position);
+	}
+
+	@Override
+	protected void publish()
+	{
+		if (this.table == null || this.table.length != this.tableSize)
+			this.table = tableOf(this.colors, this.tableSize);
+
+		this.snapshot = new Snapshot(this.interpolationType, this.maximumPosition, this.param, this.offset, this.deadColor, this.colors, this.table);
+	}
+
+	/**
+	 * Change le nombre d'entrées de la table des couleurs : plus il y en a, plus les couleurs sont
+	 * proches de l'interpolation exacte entre les couleurs du gradient.
+	 * 
+	 * @param size une puissance de deux.
+	 */
+	public synchronized void setTableSize(int size)
+	{
+		if (size < 2 || Integer.bitCount(size) != 1)
+			throw new IllegalArgumentException("La taille de la table doit être une puissance de deux.");
+
+		this.tableSize = size;
+		this.publish();
+	}
+
+	public synchronized int getTableSize()
+	{
+		return this.tableSize;
+	}
+
+	/**
+	 * Retourne la table des couleurs sur size entrées, faite une seule fois pour des couleurs et une
+	 * taille données tant qu'elle reste dans le cache.
+	 */
+	private static int[] tableOf(int[] colors, int size)
+	{
+		final TableKey key = new TableKey(colors, size);
+
+		int[] table = TABLES.get(key);
+		if (table == null)
+		{
+			table = makeTable(colors, size);
+			TABLES.put(key, table);
+		}
+
+		return table;
+	}
+
+	/**
+	 * Clé du cache des tables : le contenu des couleurs et la taille.
+	 */
+	private static final class TableKey
 	{
-		if (position >= this.maximumPosition)
-			return this.deadColor;
+		private final int[]	colors;
+		private final int	size;
+		private final int	hash;
+
+		TableKey(int[] colors, int size)
+		{
+			this.colors = colors;
+			this.size = size;
+			this.hash = 31 * Arrays.hashCode(colors) + size;
+		}
 
-		int colorPos;
+		@Override
+		public boolean equals(Object obj)
+		{
+			if (!(obj instanceof TableKey))
+				return false;
+
+			final TableKey other = (TableKey) obj;
+			return this.size == other.size && Arrays.equals(this.colors, other.colors);
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return this.hash;
+		}
+	}
+
+	/**
+	 * Interpole les couleurs sur size entrées : l'entrée k est la couleur à la fraction k / size
+	 * du gradient, calculée comme le faisait interpolate(...) avant la table.
+	 */
+	private static int[] makeTable(int[] colors, int size)
+	{
+		final int[] table = new int[size];
+		final int segments = colors.length - 1;
+
+		for (int k = 0; k < size; k++)
+		{
+			final double position = k * (double) segments / size;
+			final int colorPos = (int) position;
+			table[k] = rgbInterpolation(colors[colorPos], colors[colorPos + 1], position - colorPos);
+		}
+
+		return table;
+	}
+
+	/**
+	 * Copie immuable des paramètres d'un ColorGradient, remplacée à chaque modification de
+	 * celui-ci.
+	 * 
+	 * La position est ramenée à une fraction du gradient, puis à un indice de la table en virgule
+	 * fixe : la partie entière de position * tableSize / param, dont on garde les bits de poids
+	 * faible pour le mode cyclique.
+	 * 
+	 * Deux gradients sont égaux si leurs copies le sont : chacune est lue d'un coup, sans verrou,
+	 * et ne change pas pendant la comparaison.
+	 */
+	private static final class Snapshot
+	{
+		private final InterpolationType	interpolationType;
+		private final double			maximumPosition;
+		private final double			param;
+		private final double			offset;
+		private final int				deadColor;
+		private final int[]				colors;
+		private final int[]				table;
+		private final int				mask;
 
-		position = (position + this.offset) % this.maximumPosition;
-		if (position < 0)
-			position += this.maximumPosition;
+		/**
+		 * Le nombre d'entrées de la table par unité de position (cyclique), ou l'inverse du
+		 * paramètre (linéaire).
+		 */
+		private final double			scale;
 
-		if (this.interpolationType == InterpolationType.LINEAR)
+		Snapshot(InterpolationType interpolationType, double maximumPosition, double param, double offset, int deadColor, int[] colors,
+			int[] table)
 		{
-			position = this.maximumPosition - (this.maximumPosition / (1.0 + (position / this.param)));
-			colorPos = findColor(position, this.stepSize);
-			position %= this.stepSize;
-			position /= this.stepSize;
+			this.interpolationType = interpolationType;
+			this.maximumPosition = maximumPosition;
+			this.param = param;
+			this.deadColor = deadColor;
+			this.colors = colors;
+			this.table = table;
+			this.mask = table.length - 1;
+			this.scale = interpolationType == InterpolationType.CYCLIC ? table.length / param : 1.0 / param;
+
+			// Ramené dans [0, maximumPosition[, pour que la position décalée n'ait qu'à être
+			// soustraite une fois.
+			double normalized = maximumPosition > 0 ? offset % maximumPosition : 0;
+			if (normalized < 0)
+				normalized += maximumPosition;
+			this.offset = normalized;
 		}
-		else if (this.interpolationType == InterpolationType.CYCLIC)
+
+		int interpolate(double position)
 		{
-			colorPos = findColor(position, this.param / (double) (this.colors.length - 1));
-			colorPos %= this.colors.length - 1;
-			position %= this.param / (double) (this.colors.length - 1);
-			position /= this.param / (double) (this.colors.length - 1);
+			if (position >= this.maximumPosition)
+				return this.deadColor;
+
+			position += this.offset;
+			if (position >= this.maximumPosition)
+				position -= this.maximumPosition;
+			else if (position < 0)
+			{
+				position %= this.maximumPosition;
+				if (position < 0)
+					position += this.maximumPosition;
+			}
+
+			if (this.interpolationType == InterpolationType.LINEAR)
+			{
+				// Fraction 1 - 1 / (1 + position / param) du gradient, toujours sous 1.
+				final int index = (int) (this.table.length * (1.0 - 1.0 / (1.0 + position * this.scale)));
+				return this.table[Math.min(index, this.mask)];
+			}
+
+			return this.table[(int) ((long) (position * this.scale) & this.mask)];
 		}
-		else
+
+		@Override
+		public boolean equals(Object obj)
 		{
-			colorPos = 0;
-			position = 0;
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Snapshot))
+				return false;
+
+			final Snapshot other = (Snapshot) obj;
+			return this.interpolationType == other.interpolationType && this.param == other.param && this.offset == other.offset
+				&& this.maximumPosition == other.maximumPosition && this.deadColor == other.deadColor
+				&& this.table.length == other.table.length && Arrays.equals(this.colors, other.colors);
 		}
 
-		return rgbInterpolation(this.colors[colorPos], this.colors[colorPos + 1], position);
+		@Override
+		public int hashCode()
+		{
+			return 31 * (31 * Objects.hash(this.interpolationType, this.param, this.offset, this.maximumPosition, this.deadColor)
+				+ Arrays.hashCode(this.colors)) + this.table.length;
+		}
 	}
 
 	private static int rgbInterpolation(int c0, int c1, double position)
@@ -69,11 +292,6 @@ public class ColorGradient extends AbstractGradient
 		return colors;
 	}
 
-	private static int findColor(double position, double stepSize)
-	{
-		return (int) (position / stepSize);
-	}
-
 	@Override
 	public synchronized void setMaxPosition(double maxPos)
 	{
@@ -81,7 +299,7 @@ public class ColorGradient extends AbstractGradient
 			throw new IllegalArgumentException("Le paramètre doit être positif");
 
 		this.maximumPosition = maxPos;
-		this.stepSize = maxPos / (double) (this.colors.length - 1);
+		this.publish();
 	}
 
 	public static class Builder extends ColorGradientBuilder
@@ -113,11 +331,32 @@ public class ColorGradient extends AbstractGradient
 	}
 
 	/**
-	 * Crée une copie de ce Gradient de couleur.
+	 * Compare les dernières copies publiées des deux gradients, plutôt que leurs champs : la
+	 * comparaison ne voit jamais un gradient à moitié modifié.
+	 */
+	@Override
+	public boolean equals(Object obj)
+	{
+		if (this == obj)
+			return true;
+		if (obj == null || obj.getClass() != this.getClass())
+			return false;
+
+		return this.snapshot.equals(((ColorGradient) obj).snapshot);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return this.snapshot.hashCode();
+	}
+
+	/**
+	 * Crée une copie de ce Gradient de couleur, qui partage ses couleurs et sa table.
 	 */
 	@Override
-	public ColorGradient newInstance()
+	public synchronized ColorGradient newInstance()
 	{
-		return new ColorGradient(this.interpolationType, this.maximumPosition, this.param, this.offset, this.deadColor, this.colors);
+		return new ColorGradient(this);
 	}
 }
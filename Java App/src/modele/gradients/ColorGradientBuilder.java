@@ -86,7 +86,11 @@ public abstract class ColorGradientBuilder extends GradientBuilder<ColorGradient
 		colors[1] = this.color1;
 		System.arraycopy(this.colorsSupp, 0, colors, 2, this.colorsSupp.length);
 
-		return new ColorGradient(this.interType, this.maximumPosition, this.param, this.offset, this.deadColor, colors);
+		final ColorGradient gradient = new ColorGradient(this.interType, this.maximumPosition, this.param, this.offset, this.deadColor, colors);
+		if (this.tableSize != gradient.getTableSize())
+			gradient.setTableSize(this.tableSize);
+
+		return gradient;
 	}
 
 }
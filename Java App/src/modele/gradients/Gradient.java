@@ -9,5 +9,12 @@ public interface Gradient extends CommandableNode
 
 	public void setMaxPosition(double max);
 
+	/**
+	 * Le décalage des positions, qui fait défiler les couleurs.
+	 */
+	public double getOffset();
+
+	public void setOffset(double offset);
+
 	public Gradient newInstance();
 }
@@ -24,6 +24,7 @@ public abstract class GradientBuilder<T extends GradientBuilder<T>>
 	protected double						param;
 	protected double						offset;
 	protected double						maximumPosition;
+	protected int							tableSize;
 
 	protected GradientBuilder(double dimY)
 	{
@@ -32,6 +33,7 @@ public abstract class GradientBuilder<T extends GradientBuilder<T>>
 		this.param = DEF_PARAM;
 		this.offset = DEF_OFFSET;
 		this.maximumPosition = dimY;
+		this.tableSize = ColorGradient.DEF_TABLE_SIZE;
 	}
 
 	@SuppressWarnings("unchecked")
@@ -61,4 +63,14 @@ public abstract class GradientBuilder<T extends GradientBuilder<T>>
 		this.offset = offset;
 		return (T) this;
 	}
+
+	/**
+	 * Le nombre d'entrées (une puissance de deux) de la table des couleurs du gradient.
+	 */
+	@SuppressWarnings("unchecked")
+	public T tableSize(int size)
+	{
+		this.tableSize = size;
+		return (T) this;
+	}
 }
@@ -1,5 +1,6 @@
 package modele.navigator;
 
+import java.math.BigDecimal;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -93,6 +94,43 @@ public abstract class AbstractFracNav implements CommandableNode
 		return (P0.verticalDistanceTo(P1));
 	}
 
+	/**
+	 * Retourne la coordonnée x du centre de l'écran de navigation, dans la fractale.
+	 */
+	public BigDecimal getCenterX()
+	{
+		return new BigDecimal((P0.getX() + P1.getX()) / 2.0);
+	}
+
+	/**
+	 * Retourne la coordonnée y du centre de l'écran de navigation, dans la fractale.
+	 */
+	public BigDecimal getCenterY()
+	{
+		return new BigDecimal((P0.getY() + P1.getY()) / 2.0);
+	}
+
+	/**
+	 * Centre l'écran de navigation sur un point de la fractale, sans changer ses dimensions.
+	 * 
+	 * @param x La coordonnée x du centre.
+	 * @param y La coordonnée y du centre.
+	 */
+	public void setCenter(BigDecimal x, BigDecimal y)
+	{
+		final DoublePoint center = this.toViewPoint(x, y);
+		this.translate(center.getX() - (P0.getX() + P1.getX()) / 2.0, center.getY() - (P0.getY() + P1.getY()) / 2.0);
+	}
+
+	/**
+	 * Convertit un point de la fractale en un point de l'écran de navigation, comme P0 et P1. Ce
+	 * sont ici les mêmes coordonnées.
+	 */
+	protected DoublePoint toViewPoint(BigDecimal x, BigDecimal y)
+	{
+		return new DoublePoint(x.doubleValue(), y.doubleValue());
+	}
+
 	/**
 	 * Effectue un « zoom » dans la fractale. Un « zoom in » est un rapetissement de l'écran de
 	 * navigation, alors qu'un « zoom out » est son agrandissement.
@@ -175,6 +213,7 @@ public abstract class AbstractFracNav implements CommandableNode
 	{
 		public static final Action	SET		= new Action("set", "change");
 		public static final Action	REMOVE	= new Action("remove", "reset");
+		public static final Action	SHOW	= new Action("show", "print", "display");
 
 		private Action(String name, String... synonyms)
 		{
@@ -183,7 +222,7 @@ public abstract class AbstractFracNav implements CommandableNode
 
 		public static Definition[] getValues()
 		{
-			return new Definition[] { SET, REMOVE };
+			return new Definition[] { SET, REMOVE, SHOW };
 		}
 
 	}
@@ -193,6 +232,7 @@ public abstract class AbstractFracNav implements CommandableNode
 		public static final Field	FOCUS	= new Field("focus", "focal point", "zoom point");
 		public static final Field	P0		= new Field("P0", "[pP]0", "point zero", "point 0");
 		public static final Field	P1		= new Field("P1", "[pP]1", "point one", "point 1");
+		public static final Field	CENTER	= new Field("center", "cent(er|re)");
 
 		private Field(String name, String... synonyms)
 		{
@@ -201,7 +241,7 @@ public abstract class AbstractFracNav implements CommandableNode
 
 		public static Definition[] getValues()
 		{
-			return new Definition[] { FOCUS, P0, P1 };
+			return new Definition[] { FOCUS, P0, P1, CENTER };
 		}
 
 	}
@@ -273,6 +313,12 @@ public abstract class AbstractFracNav implements CommandableNode
 					}
 
 				}
+
+				if (def == Action.SHOW && fields.contains(Field.CENTER))
+				{
+					System.out.println("(" + getCenterX() + ", " + getCenterY() + ")");
+					return true;
+				}
 			}
 
 			return false;
@@ -288,6 +334,8 @@ public abstract class AbstractFracNav implements CommandableNode
 					return this.setP0(c.getInstruction());
 				else if (def == Field.P1)
 					return this.setP1(c.getInstruction());
+				else if (def == Field.CENTER)
+					return this.setCenter(c.getInstruction());
 			}
 
 			return false;
@@ -295,11 +343,10 @@ public abstract class AbstractFracNav implements CommandableNode
 
 		private boolean setP0(String s)
 		{
-			Pattern coord = Pattern.compile(NP.COORDINATES);
-			Matcher m = coord.matcher(s);
-			if (m.find())
+			final BigDecimal[] point = this.parsePoint(s);
+			if (point != null)
 			{
-				P0 = new DoublePoint(NP.getAsDouble(m.group("c1")), NP.getAsDouble(m.group("c2")));
+				AbstractFracNav.this.setP0(toViewPoint(point[0], point[1]));
 				return true;
 			}
 
@@ -308,17 +355,69 @@ public abstract class AbstractFracNav implements CommandableNode
 
 		private boolean setP1(String s)
 		{
-			Pattern coord = Pattern.compile(NP.COORDINATES);
-			Matcher m = coord.matcher(s);
-			if (m.find())
+			final BigDecimal[] point = this.parsePoint(s);
+			if (point != null)
+			{
+				AbstractFracNav.this.setP1(toViewPoint(point[0], point[1]));
+				return true;
+			}
+
+			return false;
+		}
+
+		private boolean setCenter(String s)
+		{
+			final BigDecimal[] point = this.parsePoint(s);
+			if (point != null)
 			{
-				P1 = new DoublePoint(NP.getAsDouble(m.group("c1")), NP.getAsDouble(m.group("c2")));
+				AbstractFracNav.this.setCenter(point[0], point[1]);
 				return true;
 			}
 
 			return false;
 		}
 
+		/**
+		 * Lit les coordonnées d'un point de la fractale, sans les arrondir aux {@code double} : un
+		 * centre noté lors d'un zoom profond est retrouvé exactement.
+		 * 
+		 * @return les coordonnées x et y, ou null s'il n'y en a pas.
+		 */
+		private BigDecimal[] parsePoint(String s)
+		{
+			Pattern coord = Pattern.compile(NP.COORDINATES);
+			Matcher m = coord.matcher(s);
+			if (!m.find())
+				return null;
+
+			try
+			{
+				return new BigDecimal[] { this.toBigDecimal(m.group("c1")), this.toBigDecimal(m.group("c2")) };
+			}
+			catch (NumberFormatException e)
+			{
+				return null;
+			}
+		}
+
+		/**
+		 * Lit un nombre décimal tel quel, ou sinon (hexadécimal, suffixe d, etc.) comme un
+		 * {@code double}.
+		 * 
+		 * @throws NumberFormatException si le nombre n'est pas fini.
+		 */
+		private BigDecimal toBigDecimal(String number)
+		{
+			try
+			{
+				return new BigDecimal(number.trim());
+			}
+			catch (NumberFormatException e)
+			{
+				return new BigDecimal(NP.getAsDouble(number));
+			}
+		}
+
 		private boolean setFocus(String s)
 		{
 			Pattern p = Pattern.compile("here|this position");
@@ -329,11 +428,10 @@ public abstract class AbstractFracNav implements CommandableNode
 				return true;
 			}
 
-			Pattern coordRegex = Pattern.compile(NP.COORDINATES);
-			m = coordRegex.matcher(s);
-			if (m.find())
+			final BigDecimal[] point = this.parsePoint(s);
+			if (point != null)
 			{
-				focalPoint = new DoublePoint(NP.getAsDouble(m.group("c1")), NP.getAsDouble(m.group("c2")));
+				focalPoint = toViewPoint(point[0], point[1]);
 				return true;
 			}
 
@@ -1,87 +1,212 @@
-package modele.navigator;
-
-import modele.fractal.ContinuousFractal;
-import modele.utils.DoublePoint;
-
-public class ContFracNav extends AbstractFracNav 
-{
-
-	public ContFracNav(ContinuousFractal fractal) 
-	{
-		this(fractal, fractal.getUpLeftBound(), fractal.getDownRightBound());
-	}
-
-	public ContFracNav(ContinuousFractal fractal, DoublePoint P0, DoublePoint P1)
-	{
-		super(fractal, P0, P1);
-	}
-
-	public void zoom(double scalex, double scaley, double pzx, double pzy)
-	{
-		if (this.focalPoint != null)
-		{
-			pzx = this.focalPoint.getX();
-			pzy = this.focalPoint.getY();
-		}
-
-		scalex += 1;
-		scaley += 1;
-		double p0x, p0y, p1x, p1y;
-
-		p0x = P0.getX();
-		p0y = P0.getY();
-		p1x = P1.getX();
-		p1y = P1.getY();
-
-		p0x = pzx - pzx * scalex + p0x * scalex;
-		p0y = pzy - pzy * scaley + p0y * scaley;
-
-		p1x = pzx - pzx * scalex + p1x * scalex;
-		p1y = pzy - pzy * scaley + p1y * scaley;
-
-		// Limites arbitraires du zoom in
-		if (p1x - p0x <= Math.pow(10, -15) * (getFractal().getDownRightBound().getX() - getFractal().getUpLeftBound().getX()))
-		{
-			return;
-		}
-		if (p1y - p0y <= Math.pow(10, -15) * (getFractal().getDownRightBound().getY() - getFractal().getUpLeftBound().getY()))
-		{
-			return;
-		}
-
-		P0 = new DoublePoint(p0x, p0y);
-		P1 = new DoublePoint(p1x, p1y);
-	}
-
-	@Override
-	public void zoom(double scale, double pzx, double pzy) 
-	{
-		this.zoom(scale, scale, pzx, pzy);
-	}
-
-	public void translate(double x, double y)
-	{
-		double p0x, p0y, p1x, p1y;
-
-		p0x = P0.getX() + x;
-		p0y = P0.getY() + y;
-		p1x = P1.getX() + x;
-		p1y = P1.getY() + y;
-
-		this.P0 = new DoublePoint(p0x, p0y);
-		this.P1 = new DoublePoint(p1x, p1y);
-	}
-
-	@Override
-	public ContinuousFractal getFractal() 
-	{
-		return (ContinuousFractal) this.fractal;
-	}
-
-	@Override
-	public ContFracNav clone() 
-	{
-		return new ContFracNav(this.getFractal().clone(), this.P0.clone(), this.P1.clone());
-	}
-
-}
+package modele.navigator;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+
+import modele.fractal.ContinuousFractal;
+import modele.utils.DoublePoint;
+import modele.utils.MathUtil;
+
+/**
+ * Navigateur de fractale continue.
+ * 
+ * P0 et P1 sont relatifs à l'origine (en haute précision) de la fractale. Lorsque la vue s'éloigne
+ * trop de cette origine par rapport à sa taille, on y déplace l'origine (voir rebase()), de sorte
+ * que les coordonnées {@code double} de la vue restent précises peu importe la profondeur du zoom.
+ * La vue est donc un centre en haute précision (getCenterX(), getCenterY()) plus des écarts en
+ * {@code double}, directement utilisables par les tuiles.
+ * 
+ * P0 et P1 appartiennent au navigateur et sont modifiés sur place : un zoom ou un déplacement
+ * continu n'alloue rien, sauf lorsque l'origine est déplacée. Les points reçus sont copiés.
+ */
+public class ContFracNav extends AbstractFracNav 
+{
+
+	/**
+	 * Distance maximale, en largeurs de vue, entre le centre de la vue et l'origine.
+	 */
+	private static final double	REBASE_FACTOR	= 1000;
+
+	public ContFracNav(ContinuousFractal fractal) 
+	{
+		this(fractal, fractal.getUpLeftBound(), fractal.getDownRightBound());
+	}
+
+	public ContFracNav(ContinuousFractal fractal, DoublePoint P0, DoublePoint P1)
+	{
+		super(fractal, P0.clone(), P1.clone());
+	}
+
+	public void zoom(double scalex, double scaley, double pzx, double pzy)
+	{
+		if (this.focalPoint != null)
+		{
+			pzx = this.focalPoint.getX();
+			pzy = this.focalPoint.getY();
+		}
+
+		scalex += 1;
+		scaley += 1;
+		double p0x, p0y, p1x, p1y;
+
+		p0x = P0.getX();
+		p0y = P0.getY();
+		p1x = P1.getX();
+		p1y = P1.getY();
+
+		p0x = pzx - pzx * scalex + p0x * scalex;
+		p0y = pzy - pzy * scaley + p0y * scaley;
+
+		p1x = pzx - pzx * scalex + p1x * scalex;
+		p1y = pzy - pzy * scaley + p1y * scaley;
+
+		// Limites du zoom in, selon la précision dont la fractale est capable.
+		final double limit = getFractal().getZoomLimit();
+		if (p1x - p0x <= limit * (getFractal().getDownRightBound().getX() - getFractal().getUpLeftBound().getX()))
+		{
+			return;
+		}
+		if (p1y - p0y <= limit * (getFractal().getDownRightBound().getY() - getFractal().getUpLeftBound().getY()))
+		{
+			return;
+		}
+
+		P0.set(p0x, p0y);
+		P1.set(p1x, p1y);
+		this.rebase();
+	}
+
+	@Override
+	public void zoom(double scale, double pzx, double pzy) 
+	{
+		this.zoom(scale, scale, pzx, pzy);
+	}
+
+	@Override
+	public void translate(double x, double y)
+	{
+		P0.set(P0.getX() + x, P0.getY() + y);
+		P1.set(P1.getX() + x, P1.getY() + y);
+		this.rebase();
+	}
+
+	@Override
+	public void setP0(DoublePoint p0)
+	{
+		P0.set(p0);
+	}
+
+	@Override
+	public void setP1(DoublePoint p1)
+	{
+		P1.set(p1);
+	}
+
+	/**
+	 * Retourne la coordonnée x du centre de la vue, en haute précision.
+	 */
+	@Override
+	public BigDecimal getCenterX()
+	{
+		final MathContext mc = MathUtil.contextFor(Math.abs(getWidth()));
+		return getFractal().getOriginX().add(new BigDecimal((P0.getX() + P1.getX()) / 2.0), mc);
+	}
+
+	/**
+	 * Retourne la coordonnée y du centre de la vue, en haute précision.
+	 */
+	@Override
+	public BigDecimal getCenterY()
+	{
+		final MathContext mc = MathUtil.contextFor(Math.abs(getHeight()));
+		return getFractal().getOriginY().add(new BigDecimal((P0.getY() + P1.getY()) / 2.0), mc);
+	}
+
+	/**
+	 * Centre la vue sur un point donné en haute précision, avec les dimensions données. L'origine
+	 * de la fractale est déplacée sur ce point : la vue est exacte peu importe sa profondeur, ce
+	 * que des coins en {@code double} ne permettraient pas.
+	 * 
+	 * @param x la coordonnée x du centre.
+	 * @param y la coordonnée y du centre.
+	 * @param width la largeur de la vue.
+	 * @param height la hauteur de la vue.
+	 */
+	public void setCenter(BigDecimal x, BigDecimal y, double width, double height)
+	{
+		this.shiftFocalPoint(x.subtract(getFractal().getOriginX()).doubleValue(), y.subtract(getFractal().getOriginY()).doubleValue());
+		getFractal().setOrigin(x, y);
+		P0.set(-width / 2.0, -height / 2.0);
+		P1.set(width / 2.0, height / 2.0);
+	}
+
+	/**
+	 * Centre la vue sur un point donné en haute précision, sans changer ses dimensions (voir
+	 * setCenter(x, y, width, height)).
+	 */
+	@Override
+	public void setCenter(BigDecimal x, BigDecimal y)
+	{
+		this.setCenter(x, y, getWidth(), getHeight());
+	}
+
+	/**
+	 * Retranche l'origine de la fractale au point : P0 et P1 lui sont relatifs.
+	 */
+	@Override
+	protected DoublePoint toViewPoint(BigDecimal x, BigDecimal y)
+	{
+		return new DoublePoint(x.subtract(getFractal().getOriginX()).doubleValue(), y.subtract(getFractal().getOriginY()).doubleValue());
+	}
+
+	/**
+	 * Déplace l'origine de la fractale au centre de la vue si celle-ci s'en est trop éloignée. P0,
+	 * P1 et le point focal sont translatés d'autant, de sorte que la vue ne change pas.
+	 */
+	private void rebase()
+	{
+		final double width = getWidth();
+		final double height = getHeight();
+		final double centerX = (P0.getX() + P1.getX()) / 2.0;
+		final double centerY = (P0.getY() + P1.getY()) / 2.0;
+
+		if (Math.abs(centerX) <= REBASE_FACTOR * width && Math.abs(centerY) <= REBASE_FACTOR * height)
+			return;
+
+		final MathContext mc = MathUtil.contextFor(Math.min(width, height));
+		final BigDecimal x = getFractal().getOriginX().add(new BigDecimal(centerX), mc);
+		final BigDecimal y = getFractal().getOriginY().add(new BigDecimal(centerY), mc);
+
+		// On translate de la distance réellement parcourue par l'origine, arrondi compris.
+		final double dx = x.subtract(getFractal().getOriginX()).doubleValue();
+		final double dy = y.subtract(getFractal().getOriginY()).doubleValue();
+
+		getFractal().setOrigin(x, y);
+		P0.set(P0.getX() - dx, P0.getY() - dy);
+		P1.set(P1.getX() - dx, P1.getY() - dy);
+		this.shiftFocalPoint(dx, dy);
+	}
+
+	/**
+	 * Garde le point focal au même endroit de la fractale lorsque l'origine avance de (dx, dy) : il
+	 * est, comme P0 et P1, relatif à l'origine.
+	 */
+	private void shiftFocalPoint(double dx, double dy)
+	{
+		if (this.focalPoint != null)
+			this.focalPoint = this.focalPoint.translate(-dx, -dy);
+	}
+
+	@Override
+	public ContinuousFractal getFractal() 
+	{
+		return (ContinuousFractal) this.fractal;
+	}
+
+	@Override
+	public ContFracNav clone() 
+	{
+		return new ContFracNav(this.getFractal().clone(), this.P0.clone(), this.P1.clone());
+	}
+
+}
@@ -1,7 +1,20 @@
 package modele.utils;
 
+/**
+ * Moyenne des couleurs des échantillons d'un pixel.
+ *
+ * Le seuil de contraste, en unités de canal (0 à 255), décide du suréchantillonnage : on ajoute
+ * des échantillons lorsque deux premiers échantillons diffèrent de plus que le seuil, et on arrête
+ * lorsque l'erreur type de la moyenne (l'écart type des échantillons divisé par la racine de leur
+ * nombre) passe sous la moitié du seuil.
+ */
 public class ColorSampler {
 
+	/**
+	 * Le nombre d'échantillons à partir duquel l'écart type est assez fiable pour s'arrêter.
+	 */
+	private static final int	MIN_CONVERGED	= 4;
+
 	private int[]	colorArray;
 	private int		position;
 	private double	threashold;
@@ -38,13 +51,60 @@ public class ColorSampler {
 		return IntColor.rgb((int) (r / (double) (position)), (int) (g / (double) (position)), (int) (b / (double) (position)));
 	}
 
+	/**
+	 * Ajoute une couleur et vérifie si elle diffère de la précédente de plus que le seuil, sur un
+	 * des canaux.
+	 */
 	public boolean addOverThreshold(int c)
 	{
 		colorArray[position] = c;
 		position++;
 
-		return threashold < Math.max(Math.abs(IntColor.red(colorArray[position - 2]) - IntColor.red(c)),
-			Math.abs(Math.max(IntColor.blue(colorArray[position - 2]) - IntColor.blue(c), Math.abs(IntColor.green(colorArray[position - 2]) - IntColor.green(c)))));
+		final int previous = colorArray[position - 2];
+
+		return threashold < Math.max(Math.abs(IntColor.red(previous) - IntColor.red(c)),
+			Math.max(Math.abs(IntColor.green(previous) - IntColor.green(c)), Math.abs(IntColor.blue(previous) - IntColor.blue(c))));
+	}
+
+	/**
+	 * Retourne l'écart type des couleurs ajoutées : la racine de la somme des variances de leurs
+	 * canaux.
+	 */
+	public double deviation()
+	{
+		if (position < 2)
+			return 0;
+
+		double r = 0, g = 0, b = 0, r2 = 0, g2 = 0, b2 = 0;
+
+		for (int i = 0; i < position; i++)
+		{
+			final int red = IntColor.red(colorArray[i]), green = IntColor.green(colorArray[i]), blue = IntColor.blue(colorArray[i]);
+			r += red;
+			g += green;
+			b += blue;
+			r2 += red * red;
+			g2 += green * green;
+			b2 += blue * blue;
+		}
+
+		final double variance = (r2 - r * r / position) + (g2 - g * g / position) + (b2 - b * b / position);
+
+		return Math.sqrt(Math.max(0, variance) / (position - 1));
+	}
+
+	/**
+	 * Vérifie si la moyenne des couleurs ajoutées est assez précise : l'erreur type est sous la
+	 * moitié du seuil.
+	 */
+	public boolean converged()
+	{
+		return position >= MIN_CONVERGED && 2 * this.deviation() <= threashold * Math.sqrt(position);
+	}
+
+	public double getThreshold()
+	{
+		return threashold;
 	}
 
 }
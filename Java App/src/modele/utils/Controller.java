@@ -1,42 +1,43 @@
 package modele.utils;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compte les tâches terminées et exécute onFinish, une seule fois, lorsque maxCount l'ont été.
+ * Le compte est atomique : les tâches qui terminent ensemble ne se bloquent pas.
+ */
 public class Controller {
 
-	private boolean		finished;
+	private volatile boolean	finished;
 
-	private Function	onFinish	= () -> {};
+	private volatile Function	onFinish	= () -> {};
 
-	private int			count;
-	private final int	maxCount;
+	private final AtomicInteger	count;
+	private final int			maxCount;
 
 	public Controller(int maxCount)
 	{
 		this.maxCount = maxCount;
 		finished = false;
-		this.count = 0;
-	}
-
-	public synchronized void finished()
-	{
-		count++;
-		this.checkIfCountReached();
+		this.count = new AtomicInteger();
 	}
 
-	private void checkIfCountReached()
+	public void finished()
 	{
-		if (this.count >= this.maxCount)
+		// Seule la tâche qui atteint exactement maxCount exécute onFinish.
+		if (this.count.incrementAndGet() == this.maxCount)
 		{
 			finished = true;
 			this.onFinish.execute();
 		}
 	}
 
-	public synchronized int getCount()
+	public int getCount()
 	{
-		return this.count;
+		return this.count.get();
 	}
 
-	public synchronized boolean allFinished()
+	public boolean allFinished()
 	{
 		return this.finished;
 	}
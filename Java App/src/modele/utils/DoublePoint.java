@@ -85,6 +85,13 @@ public class DoublePoint
 		this.y = p.getY();
 	}
 
+	/** ATTENTION: Modifie cet objet. */
+	public void set(double x, double y)
+	{
+		this.x = x;
+		this.y = y;
+	}
+
 	public String toString()
 	{
 		return "[" + x + " " + y + "]";
@@ -1,12 +1,19 @@
 package modele.utils;
 
 import java.math.BigDecimal;
+import java.math.MathContext;
 import java.math.RoundingMode;
 
 public class MathUtil {
 	private static final BigDecimal	SQRT_DIG	= new BigDecimal(150);
 	private static final BigDecimal	SQRT_PRE	= new BigDecimal(10).pow(SQRT_DIG.intValue());
 
+	/**
+	 * Number of significant digits kept on top of those needed to separate two points
+	 * {@code spacing} apart.
+	 */
+	private static final int		GUARD_DIGITS	= 20;
+
 	/**
 	 * Private utility method used to compute the square root of a BigDecimal.
 	 * 
@@ -39,4 +46,20 @@ public class MathUtil {
 	{
 		return sqrtNewtonRaphson(c, new BigDecimal(1), new BigDecimal(1).divide(SQRT_PRE));
 	}
+
+	/**
+	 * Computes the MathContext needed to represent, without loss, coordinates of order 1 which are
+	 * {@code spacing} apart (typically the width of the view).
+	 * 
+	 * @param spacing the smallest distance that must be resolved.
+	 * @return a MathContext with enough significant digits.
+	 */
+	public static MathContext contextFor(double spacing)
+	{
+		int digits = GUARD_DIGITS;
+		if (spacing > 0 && spacing < 1)
+			digits += (int) Math.ceil(-Math.log10(spacing));
+
+		return new MathContext(digits, RoundingMode.HALF_EVEN);
+	}
 }
@@ -1,26 +1,66 @@
 package modele.utils;
 
-public class ThreadKiller 
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * Arrête les Threads d'une génération.
+ *
+ * Chaque génération reçoit une époque, par newGeneration(), que ses tâches gardent. Une tâche est
+ * arrêtée dès que l'époque courante n'est plus la sienne : parce que la génération a été arrêtée
+ * (killAll()) ou qu'une autre l'a remplacée. Une même instance sert ainsi à toutes les
+ * générations, et les tâches d'une génération remplacée s'arrêtent même si elles n'ont pas encore
+ * commencé.
+ *
+ * La vérification, faite très souvent par les tâches, n'est qu'une lecture volatile : il n'y a
+ * pas de verrou.
+ */
+public class ThreadKiller
 {
-	private boolean	killed;
+	private static final VarHandle	EPOCH;
+
+	static
+	{
+		try
+		{
+			EPOCH = MethodHandles.lookup().findVarHandle(ThreadKiller.class, "epoch", long.class);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private volatile long	epoch;
 
 	public ThreadKiller()
 	{
-		killed = false;
+		epoch = 0;
 	}
 
-	public ThreadKiller(boolean value)
+	/**
+	 * Commence une nouvelle génération, ce qui arrête la précédente.
+	 *
+	 * @return l'époque de la nouvelle génération.
+	 */
+	public long newGeneration()
 	{
-		killed = value;
+		return (long) EPOCH.getAndAdd(this, 1L) + 1;
 	}
 
-	public synchronized void killAll()
+	/**
+	 * Arrête la génération courante.
+	 */
+	public void killAll()
 	{
-		this.killed = true;
+		EPOCH.getAndAdd(this, 1L);
 	}
 
-	public synchronized boolean isKilled()
+	/**
+	 * Vérifie si la génération de l'époque spécifiée a été arrêtée ou remplacée.
+	 */
+	public boolean isKilled(long generation)
 	{
-		return this.killed;
+		return this.epoch != generation;
 	}
 }
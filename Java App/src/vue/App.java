@@ -147,19 +147,24 @@ public class App extends Application implements CommandableNode {
 		});
 
 		root.setOnMouseDragged(e -> {
-			final double x = e.getX();
-			final double y = e.getY();
+			// On déplace d'un nombre entier de pixels, pour que le générateur puisse réutiliser
+			// les pixels de l'image précédente. Le reste est gardé pour le prochain déplacement.
+			final long dx = Math.round(mouseX - e.getX());
+			final long dy = Math.round(mouseY - e.getY());
 
-			final double x1 = ((mouseX - x) / (double) generator.getComputedImgWidth()) * generator.getNav().getWidth();
-			final double y1 = ((mouseY - y) / (double) generator.getComputedImgHeight()) * generator.getNav().getHeight();
+			if (dx == 0 && dy == 0)
+				return;
+
+			final double x1 = (dx / (double) generator.getComputedImgWidth()) * generator.getNav().getWidth();
+			final double y1 = (dy / (double) generator.getComputedImgHeight()) * generator.getNav().getHeight();
 
 			generator.getNav().translate(x1, y1);
 
 			if (generator.firstStepDone())
 				generator.restart();
 
-			mouseX = x;
-			mouseY = y;
+			mouseX -= dx;
+			mouseY -= dy;
 		});
 
 		root.setOnMouseMoved((e) -> {
@@ -205,6 +210,27 @@ public class App extends Application implements CommandableNode {
 			});
 	}
 
+	/**
+	 * Lance ou arrête le défilement des couleurs : "cycle" seul l'inverse, "cycle off" l'arrête et
+	 * "cycle [n]" le lance à n itérations par seconde.
+	 */
+	private boolean cycleColors(String s)
+	{
+		if (!(generator instanceof ContinuousGenerator))
+			return false;
+
+		final ContinuousGenerator gen = (ContinuousGenerator) generator;
+		final Matcher m = Pattern.compile(NP.DOUBLE).matcher(s);
+		final boolean hasSpeed = m.find();
+
+		if (s.matches(".*\\b(off|stop)\\b.*") || (gen.isColorCycling() && !hasSpeed))
+			gen.stopColorCycling();
+		else
+			gen.startColorCycling(hasSpeed ? NP.getAsDouble(m.group()) : ContinuousGenerator.DEF_CYCLING_SPEED);
+
+		return true;
+	}
+
 	private static double scrollNorm(double x)
 	{
 		return (2 * Math.atan(x)) / Math.PI;
@@ -214,6 +240,7 @@ public class App extends Application implements CommandableNode {
 	{
 		public static final Action	EXPORT	= new Action("export", "save");
 		public static final Action	RESET	= new Action("reset");
+		public static final Action	CYCLE	= new Action("cycle colors", "cycl(e|ing)");
 
 		private Action(String name, String... synonyms)
 		{
@@ -222,7 +249,7 @@ public class App extends Application implements CommandableNode {
 
 		public static Definition[] getValues()
 		{
-			return new Definition[] { EXPORT, RESET };
+			return new Definition[] { EXPORT, RESET, CYCLE };
 		}
 	}
 
@@ -286,6 +313,10 @@ public class App extends Application implements CommandableNode {
 				{
 					initGenerator();
 				}
+				else if (def == Action.CYCLE)
+				{
+					return cycleColors(c.getInstruction());
+				}
 			}
 
 			return false;
@@ -0,0 +1,172 @@
+package modele.fractal.continuous;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * VectorKernel écrit avec l'API Vector (SIMD) du JDK.
+ *
+ * Chaque vecteur contient autant de points que le processeur en traite par instruction (2 en SSE,
+ * 4 en AVX2, 8 en AVX-512). Les points qui s'échappent sont masqués : leur z et leur itération
+ * ne changent plus, et le vecteur continue tant qu'un de ses points est actif.
+ *
+ * Cette classe est dans sa propre racine de sources, compilée seulement avec le module
+ * jdk.incubator.vector (voir VectorKernel), et chargée par Mandelbrot par réflexion.
+ */
+final class IncubatorVectorKernel implements VectorKernel
+{
+
+	private static final VectorSpecies<Double>	SPECIES	= DoubleVector.SPECIES_PREFERRED;
+
+	/**
+	 * La position de chaque valeur de l'état des voies dans laneValues, en multiples de lanes(),
+	 * et de chaque masque dans laneMasks.
+	 */
+	private static final int	CR			= 0;
+	private static final int	CI			= 1;
+	private static final int	ZR			= 2;
+	private static final int	ZI			= 3;
+	private static final int	ITERATION	= 4;
+	private static final int	SAVED_RE	= 5;
+	private static final int	SAVED_IMG	= 6;
+	private static final int	STEPS		= 7;
+	private static final int	PERIOD		= 8;
+	private static final int	OCCUPIED	= 0;
+	private static final int	STOPPED		= 1;
+	private static final int	CYCLING		= 2;
+
+	IncubatorVectorKernel()
+	{
+	}
+
+	@Override
+	public int lanes()
+	{
+		return SPECIES.length();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 *
+	 * Chaque voie du vecteur itère son propre point. Dès qu'un point s'arrête, sa voie reçoit le
+	 * point suivant : les voies restent occupées même si les points s'échappent à des itérations
+	 * très différentes.
+	 */
+	@Override
+	public void iterate(double[] cRe, double[] cImg, int count, int maxIteration, double escapeRadius, double tolerance,
+		double[] zRe, double[] zImg, double[] iterations, double[] laneValues, boolean[] laneMasks, int[] lanePoints)
+	{
+		final int lanes = SPECIES.length();
+		if (count == 0)
+			return;
+
+		// L'état de chaque voie, lorsqu'il faut changer de point.
+		final double[] v = laneValues;
+		final boolean[] masks = laneMasks;
+
+		int next = 0;
+		for (int l = 0; l < lanes; l++)
+			next = load(l, lanes, next, count, cRe, cImg, lanePoints, v, masks);
+
+		final DoubleVector one = DoubleVector.broadcast(SPECIES, 1);
+		final DoubleVector zero = DoubleVector.zero(SPECIES);
+
+		while (true)
+		{
+			final DoubleVector cr = DoubleVector.fromArray(SPECIES, v, CR * lanes);
+			final DoubleVector ci = DoubleVector.fromArray(SPECIES, v, CI * lanes);
+			final VectorMask<Double> occupied = VectorMask.fromArray(SPECIES, masks, OCCUPIED * lanes);
+			DoubleVector zr = DoubleVector.fromArray(SPECIES, v, ZR * lanes);
+			DoubleVector zi = DoubleVector.fromArray(SPECIES, v, ZI * lanes);
+			DoubleVector iteration = DoubleVector.fromArray(SPECIES, v, ITERATION * lanes);
+			DoubleVector savedRe = DoubleVector.fromArray(SPECIES, v, SAVED_RE * lanes);
+			DoubleVector savedImg = DoubleVector.fromArray(SPECIES, v, SAVED_IMG * lanes);
+			DoubleVector steps = DoubleVector.fromArray(SPECIES, v, STEPS * lanes);
+			DoubleVector period = DoubleVector.fromArray(SPECIES, v, PERIOD * lanes);
+			VectorMask<Double> stop, cycle = SPECIES.maskAll(false);
+
+			// On itère toutes les voies tant qu'aucun point ne s'arrête.
+			while (true)
+			{
+				final DoubleVector zr2 = zr.mul(zr);
+				final DoubleVector zi2 = zi.mul(zi);
+
+				stop = zr2.add(zi2).compare(VectorOperators.GE, escapeRadius).or(iteration.compare(VectorOperators.GE, maxIteration)).and(occupied);
+				if (stop.or(cycle).anyTrue())
+					break;
+
+				final DoubleVector nextImg = zr.mul(zi).mul(2).add(ci);
+				zr = zr2.sub(zi2).add(cr);
+				zi = nextImg;
+				iteration = iteration.add(one);
+
+				// Détection de cycles (méthode de Brent) : z est comparé à une valeur sauvegardée,
+				// qu'on remplace à chaque puissance de deux d'itérations.
+				cycle = zr.sub(savedRe).abs().max(zi.sub(savedImg).abs()).compare(VectorOperators.LT, tolerance).and(occupied);
+
+				steps = steps.add(one);
+				final VectorMask<Double> save = steps.compare(VectorOperators.EQ, period);
+				savedRe = savedRe.blend(zr, save);
+				savedImg = savedImg.blend(zi, save);
+				period = period.blend(period.add(period), save);
+				steps = steps.blend(zero, save);
+			}
+
+			zr.intoArray(v, ZR * lanes);
+			zi.intoArray(v, ZI * lanes);
+			iteration.intoArray(v, ITERATION * lanes);
+			savedRe.intoArray(v, SAVED_RE * lanes);
+			savedImg.intoArray(v, SAVED_IMG * lanes);
+			steps.intoArray(v, STEPS * lanes);
+			period.intoArray(v, PERIOD * lanes);
+			stop.intoArray(masks, STOPPED * lanes);
+			cycle.intoArray(masks, CYCLING * lanes);
+
+			boolean any = false;
+			for (int l = 0; l < lanes; l++)
+			{
+				final boolean cycling = masks[CYCLING * lanes + l];
+				if (masks[STOPPED * lanes + l] || cycling)
+				{
+					final int k = lanePoints[l];
+					zRe[k] = v[ZR * lanes + l];
+					zImg[k] = v[ZI * lanes + l];
+					iterations[k] = cycling ? Double.POSITIVE_INFINITY : v[ITERATION * lanes + l];
+
+					next = load(l, lanes, next, count, cRe, cImg, lanePoints, v, masks);
+				}
+				any |= masks[OCCUPIED * lanes + l];
+			}
+
+			if (!any)
+				return;
+		}
+	}
+
+	/**
+	 * Place le point next dans la voie l, ou la vide s'il n'y a plus de points.
+	 *
+	 * @return le prochain point à placer.
+	 */
+	private static int load(int l, int lanes, int next, int count, double[] cRe, double[] cImg, int[] points, double[] v, boolean[] masks)
+	{
+		final boolean occupied = next < count;
+
+		// Une voie vide itère c = 0, qui reste à z = 0.
+		points[l] = occupied ? next : -1;
+		v[CR * lanes + l] = occupied ? cRe[next] : 0;
+		v[CI * lanes + l] = occupied ? cImg[next] : 0;
+		v[ZR * lanes + l] = 0;
+		v[ZI * lanes + l] = 0;
+		v[ITERATION * lanes + l] = 0;
+		v[SAVED_RE * lanes + l] = 0;
+		v[SAVED_IMG * lanes + l] = 0;
+		v[STEPS * lanes + l] = 0;
+		v[PERIOD * lanes + l] = 1;
+		masks[OCCUPIED * lanes + l] = occupied;
+
+		return occupied ? next + 1 : next;
+	}
+}